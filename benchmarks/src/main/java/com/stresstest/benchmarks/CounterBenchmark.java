@@ -0,0 +1,51 @@
+package com.stresstest.benchmarks;
+
+import com.stresstest.LatencyHistogram;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Statistics updates under contention: the shared LongAdder counters the workers use,
+ * a shared AtomicLong for comparison, and a per-thread LatencyHistogram record.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(8)
+public class CounterBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+        final LongAdder adder = new LongAdder();
+        final AtomicLong atomic = new AtomicLong();
+    }
+
+    @State(Scope.Thread)
+    public static class PerThread {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        long value = 12_345;
+    }
+
+    @Benchmark
+    public void longAdder(Shared shared) {
+        shared.adder.increment();
+    }
+
+    @Benchmark
+    public long atomicLong(Shared shared) {
+        return shared.atomic.incrementAndGet();
+    }
+
+    @Benchmark
+    public void histogramRecord(PerThread state) {
+        state.histogram.record(state.value);
+        state.value = (state.value * 31 + 7) & 0xFFFFFF;
+    }
+}
@@ -0,0 +1,96 @@
+package com.stresstest.benchmarks;
+
+import com.stresstest.Config;
+import com.stresstest.TCPServer;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Loopback TCP echo round trip through each server engine, on one kept-alive
+ * connection: the per-request cost of TCPServer.handleClient or the NIO event loop.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EchoBenchmark {
+    @Param({"thread", "nio"})
+    public String engine;
+
+    @Param({"64", "1024", "4096"})
+    public int size;
+
+    private TCPServer server;
+    private Socket socket;
+    private InputStream input;
+    private OutputStream output;
+    private byte[] request;
+    private byte[] response;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        int port = "nio".equals(engine) ? 28101 : 28100;
+        Config.ServerConfig config = new Config.ServerConfig();
+        config.tcpEnabled = true;
+        config.tcpEngine = engine;
+        config.tcpPortRange = new Config.PortRange();
+        config.tcpPortRange.start = port;
+        config.tcpPortRange.end = port;
+        server = new TCPServer(config);
+        server.start();
+
+        socket = connect(port);
+        socket.setTcpNoDelay(true);
+        input = socket.getInputStream();
+        output = socket.getOutputStream();
+        request = new byte[size];
+        response = new byte[size];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        socket.close();
+        server.stop();
+    }
+
+    @Benchmark
+    public byte[] roundTrip() throws IOException {
+        output.write(request);
+        int offset = 0;
+        while (offset < size) {
+            int read = input.read(response, offset, size - offset);
+            if (read == -1) {
+                throw new EOFException("Server closed the connection");
+            }
+            offset += read;
+        }
+        return response;
+    }
+
+    // The thread engine binds its listener asynchronously
+    static Socket connect(int port) throws InterruptedException, IOException {
+        IOException last = null;
+        for (int attempt = 0; attempt < 50; attempt++) {
+            try {
+                return new Socket("localhost", port);
+            } catch (IOException e) {
+                last = e;
+                Thread.sleep(100);
+            }
+        }
+        throw last;
+    }
+}
@@ -0,0 +1,100 @@
+package com.stresstest.benchmarks;
+
+import com.stresstest.Config;
+import com.stresstest.Durability;
+import com.stresstest.FileIOEngine;
+import com.stresstest.LatencyHistogram;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * File create (write of a new file), whole-file read and append through each I/O
+ * engine of FileStressTest, without durability. Files live in a temp directory and
+ * mostly stay in the page cache, so this measures the Java-side data path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FileBenchmark {
+    private static final int FILE_COUNT = 64;
+
+    @Param({"stream", "channel", "mmap", "async"})
+    public String engine;
+
+    @Param({"4096", "65536", "1048576"})
+    public int size;
+
+    private File directory;
+    private File[] files;
+    private File appendFile;
+    private FileIOEngine io;
+    private byte[] data;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Config.FileTestConfig config = new Config.FileTestConfig();
+        io = FileIOEngine.create(engine, config, new Durability(config, new LatencyHistogram(), new LongAdder()));
+        directory = Files.createTempDirectory("mystress-bench").toFile();
+        data = new byte[size];
+        new Random(42).nextBytes(data);
+
+        files = new File[FILE_COUNT];
+        for (int i = 0; i < FILE_COUNT; i++) {
+            files[i] = new File(directory, "file_" + i + ".dat");
+            io.write(files[i], data, 0, size, false);
+        }
+        appendFile = new File(directory, "append.dat");
+    }
+
+    // Keeps the append target from growing without bound across iterations
+    @Setup(Level.Iteration)
+    public void resetAppend() throws IOException {
+        Files.deleteIfExists(appendFile.toPath());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        File[] children = directory.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                child.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public void create() throws IOException {
+        io.write(nextFile(), data, 0, size, false);
+    }
+
+    @Benchmark
+    public long read() throws IOException {
+        return io.read(nextFile());
+    }
+
+    @Benchmark
+    public void append() throws IOException {
+        io.write(appendFile, data, 0, Math.min(size, 4096), true);
+    }
+
+    private File nextFile() {
+        next = (next + 1) % FILE_COUNT;
+        return files[next];
+    }
+}
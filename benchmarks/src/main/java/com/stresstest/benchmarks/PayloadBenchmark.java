@@ -0,0 +1,49 @@
+package com.stresstest.benchmarks;
+
+import com.stresstest.PayloadPool;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of producing one payload: filling a fresh random array, as workers used to,
+ * against picking a slice of the shared pre-generated PayloadPool region.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PayloadBenchmark {
+    @Param({"64", "4096", "65536"})
+    public int size;
+
+    private Random random;
+    private PayloadPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        random = new Random(42);
+        pool = new PayloadPool(size, new Random(42));
+    }
+
+    @Benchmark
+    public byte[] generate() {
+        byte[] data = new byte[size];
+        random.nextBytes(data);
+        return data;
+    }
+
+    @Benchmark
+    public void poolSlice(Blackhole blackhole) {
+        blackhole.consume(pool.region());
+        blackhole.consume(pool.offsetFor(size, random));
+    }
+}
@@ -0,0 +1,77 @@
+package com.stresstest.benchmarks;
+
+import com.stresstest.Config;
+import com.stresstest.UDPServer;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Loopback UDP send and echo receive through each server engine's receive loop.
+ * A lost datagram shows up as a one-second outlier rather than a failure.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UdpBenchmark {
+    @Param({"thread", "nio"})
+    public String engine;
+
+    @Param({"64", "1024"})
+    public int size;
+
+    private UDPServer server;
+    private DatagramSocket socket;
+    private DatagramPacket request;
+    private DatagramPacket response;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        int port = "nio".equals(engine) ? 28201 : 28200;
+        Config.ServerConfig config = new Config.ServerConfig();
+        config.udpEnabled = true;
+        config.udpEngine = engine;
+        config.udpPortRange = new Config.PortRange();
+        config.udpPortRange.start = port;
+        config.udpPortRange.end = port;
+        server = new UDPServer(config);
+        server.start();
+        Thread.sleep(500); // let the listener bind
+
+        socket = new DatagramSocket();
+        socket.setSoTimeout(1000);
+        request = new DatagramPacket(new byte[size], size, InetAddress.getLoopbackAddress(), port);
+        response = new DatagramPacket(new byte[size], size);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        socket.close();
+        server.stop();
+    }
+
+    @Benchmark
+    public int roundTrip() throws IOException {
+        socket.send(request);
+        response.setLength(size);
+        try {
+            socket.receive(response);
+        } catch (SocketTimeoutException e) {
+            return -1;
+        }
+        return response.getLength();
+    }
+}
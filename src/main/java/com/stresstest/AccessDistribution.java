@@ -0,0 +1,157 @@
+package com.stresstest;
+
+import java.util.Random;
+
+/**
+ * Chooses which item (file, port, block) an operation targets, as an index in [0, n).
+ * Low indices are the hot end of skewed distributions. Instances cache the constants
+ * for the last n they saw, so they are per worker and not thread-safe.
+ *
+ * <ul>
+ *   <li>uniform: every item equally likely</li>
+ *   <li>zipfian: item i chosen with probability proportional to 1/(i+1)^s, 0 &lt; s &lt; 1</li>
+ *   <li>hotspot: hotOpFraction of operations go to the first hotItemFraction of items</li>
+ *   <li>latest: zipfian over recency; callers that track write order map rank 0 to the
+ *       newest item, others (ports, blocks) treat it as plain zipfian</li>
+ * </ul>
+ */
+public abstract class AccessDistribution {
+
+    public abstract int next(Random random, int n);
+
+    public boolean isUniform() {
+        return false;
+    }
+
+    public boolean isLatest() {
+        return false;
+    }
+
+    public static AccessDistribution create(Config.AccessConfig config) {
+        String name = config != null && config.distribution != null ? config.distribution : "uniform";
+        switch (name.toLowerCase()) {
+            case "uniform":
+                return new Uniform();
+            case "zipfian":
+                return new Zipfian(config.zipfianExponent, false);
+            case "latest":
+                return new Zipfian(config.zipfianExponent, true);
+            case "hotspot":
+                return new Hotspot(config.hotItemFraction, config.hotOpFraction);
+            default:
+                throw new IllegalArgumentException("Unknown access distribution: " + name);
+        }
+    }
+
+    private static final class Uniform extends AccessDistribution {
+        @Override
+        public int next(Random random, int n) {
+            return random.nextInt(n);
+        }
+
+        @Override
+        public boolean isUniform() {
+            return true;
+        }
+    }
+
+    /**
+     * Gray et al.'s zipfian generator ("Quickly Generating Billion-Record Synthetic
+     * Databases"), as used by YCSB. zeta(n) is exact from a prefix table up to
+     * EXACT_TERMS and Euler-Maclaurin beyond it, so a size change costs O(1) however
+     * far the file set grows or shrinks.
+     */
+    private static final class Zipfian extends AccessDistribution {
+        private static final int EXACT_TERMS = 1024;
+
+        private final double theta;
+        private final double alpha;
+        private final double zeta2;
+        private final boolean latest;
+        private final double[] prefixZeta = new double[EXACT_TERMS + 1];
+        private int n;
+        private double zetaN;
+        private double eta;
+
+        Zipfian(double exponent, boolean latest) {
+            if (exponent <= 0 || exponent >= 1) {
+                throw new IllegalArgumentException("zipfianExponent must be between 0 and 1 (exclusive): " + exponent);
+            }
+            this.theta = exponent;
+            this.alpha = 1.0 / (1.0 - theta);
+            this.zeta2 = 1.0 + Math.pow(0.5, theta);
+            this.latest = latest;
+            for (int i = 1; i <= EXACT_TERMS; i++) {
+                prefixZeta[i] = prefixZeta[i - 1] + Math.pow(i, -theta);
+            }
+        }
+
+        @Override
+        public int next(Random random, int n) {
+            if (n <= 1) {
+                return 0;
+            }
+            if (n != this.n) {
+                resize(n);
+            }
+            double u = random.nextDouble();
+            double uz = u * zetaN;
+            if (uz < 1.0) {
+                return 0;
+            }
+            if (uz < zeta2) {
+                return 1;
+            }
+            int index = (int) (n * Math.pow(eta * u - eta + 1.0, alpha));
+            return Math.min(index, n - 1);
+        }
+
+        private void resize(int newN) {
+            n = newN;
+            zetaN = zeta(newN);
+            eta = (1.0 - Math.pow(2.0 / n, 1.0 - theta)) / (1.0 - zeta2 / zetaN);
+        }
+
+        private double zeta(int count) {
+            if (count <= EXACT_TERMS) {
+                return prefixZeta[count];
+            }
+            // sum over (K, count] of x^-theta: integral + endpoint and first derivative corrections
+            double k = EXACT_TERMS;
+            double x = count;
+            double integral = (Math.pow(x, 1.0 - theta) - Math.pow(k, 1.0 - theta)) / (1.0 - theta);
+            double ends = (Math.pow(x, -theta) - Math.pow(k, -theta)) / 2.0;
+            double slopes = -theta * (Math.pow(x, -theta - 1.0) - Math.pow(k, -theta - 1.0)) / 12.0;
+            return prefixZeta[EXACT_TERMS] + integral + ends + slopes;
+        }
+
+        @Override
+        public boolean isLatest() {
+            return latest;
+        }
+    }
+
+    private static final class Hotspot extends AccessDistribution {
+        private final double hotItemFraction;
+        private final double hotOpFraction;
+        private int n;
+        private int hotCount;
+
+        Hotspot(double hotItemFraction, double hotOpFraction) {
+            this.hotItemFraction = hotItemFraction;
+            this.hotOpFraction = hotOpFraction;
+        }
+
+        @Override
+        public int next(Random random, int n) {
+            if (n != this.n) {
+                this.n = n;
+                this.hotCount = Math.max(1, Math.min(n, (int) (n * hotItemFraction)));
+            }
+            if (hotCount == n || random.nextDouble() < hotOpFraction) {
+                return random.nextInt(hotCount);
+            }
+            return hotCount + random.nextInt(n - hotCount);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.stresstest;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Agent mode: waits for a controller on the bind address (loopback unless told
+ * otherwise), checks the shared token and that every path of the config lies under the
+ * agent's root directory, runs the pushed config from the agreed start
+ * time and reports counters every interval and the measured window (counters and
+ * histograms, warm-up and shutdown drain excluded) at the end. One controller
+ * session runs at a time; the agent then waits for the next one.
+ */
+public class Agent {
+    public static final int DEFAULT_PORT = 7700;
+    public static final String TOKEN_ENV = "MYSTRESS_AGENT_TOKEN";
+
+    private final InetAddress bindAddress;
+    private final int port;
+    private final byte[] token;
+    private final Path root;
+    private StressTest current;
+
+    public Agent(InetAddress bindAddress, int port, String token, File root) throws IOException {
+        if (token == null || token.isEmpty()) {
+            throw new IllegalArgumentException("A shared token is required: set " + TOKEN_ENV + " or pass --token");
+        }
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+        this.root = root.getCanonicalFile().toPath();
+    }
+
+    public void run() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(port, 50, bindAddress)) {
+            System.out.println("Agent listening on " + bindAddress.getHostAddress() + ":" + port + ", root " + root);
+            while (true) {
+                try (Socket socket = serverSocket.accept()) {
+                    System.out.println("Controller connected from " + socket.getRemoteSocketAddress());
+                    serve(socket);
+                } catch (IOException e) {
+                    System.err.println("Controller session failed: " + e.getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } finally {
+                    stopCurrent();
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) throws IOException, InterruptedException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+
+        AgentMessage setup = AgentMessage.read(in);
+        if (setup == null || !AgentMessage.CONFIG.equals(setup.type) || setup.config == null) {
+            throw new IOException("Expected config from controller");
+        }
+        String refusal = check(setup);
+        if (refusal != null) {
+            AgentMessage rejected = new AgentMessage(AgentMessage.REJECTED);
+            rejected.error = refusal;
+            rejected.send(out);
+            throw new IOException("Config rejected: " + refusal);
+        }
+        Config config = setup.config;
+        // The controller prints the merged interval report; this agent only feeds it
+        int intervalSeconds = Math.max(1, config.run.reportIntervalSeconds);
+        config.run.reportIntervalSeconds = 0;
+        StressTest test;
+        try {
+            test = new StressTest(config);
+        } catch (IllegalArgumentException e) {
+            AgentMessage rejected = new AgentMessage(AgentMessage.REJECTED);
+            rejected.error = e.getMessage();
+            rejected.send(out);
+            throw new IOException("Config rejected: " + e.getMessage());
+        }
+        new AgentMessage(AgentMessage.READY).send(out);
+
+        long wait = setup.startAtMillis - System.currentTimeMillis();
+        if (wait > 0) {
+            Thread.sleep(wait);
+        }
+        synchronized (this) {
+            current = test;
+        }
+        test.start();
+
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "agent-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(() -> {
+            AgentMessage interval = new AgentMessage(AgentMessage.INTERVAL);
+            interval.counters = test.collectCounters();
+            try {
+                interval.send(out);
+            } catch (IOException e) {
+                // Controller gone; the read loop below notices and stops the test
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+
+        // Tells the controller when run.durationSeconds or the load schedule is over
+        Thread finishWatcher = new Thread(() -> {
+            try {
+                test.awaitFinished();
+                new AgentMessage(AgentMessage.FINISHED).send(out);
+            } catch (InterruptedException | IOException e) {
+                // Stopped before finishing, or controller gone
+            }
+        }, "agent-finish-watcher");
+        finishWatcher.setDaemon(true);
+        finishWatcher.start();
+
+        try {
+            AgentMessage message;
+            while ((message = AgentMessage.read(in)) != null && !AgentMessage.STOP.equals(message.type)) {
+                // Nothing else is expected while running
+            }
+        } finally {
+            ticker.shutdownNow();
+            finishWatcher.interrupt();
+            stopCurrent();
+        }
+
+        // Only the measured window is reported, so warm-up and the shutdown drain stay out of the merge
+        AgentMessage result = new AgentMessage(AgentMessage.FINAL);
+        Map<String, Long> counters = test.getMeasuredCounters();
+        Map<String, LatencyHistogram> histograms = test.getMeasuredHistograms();
+        result.counters = counters != null ? counters : Collections.<String, Long>emptyMap();
+        result.histograms = histograms != null ? histograms : Collections.<String, LatencyHistogram>emptyMap();
+        result.measuredSeconds = test.getMeasuredSeconds();
+        result.send(out);
+    }
+
+    // Returns why the config must not run, or null. Paths the test writes to or deletes
+    // under must stay inside the root, since cleanup wipes testFolderPath.
+    private String check(AgentMessage setup) throws IOException {
+        byte[] offered = setup.token != null ? setup.token.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        if (!MessageDigest.isEqual(token, offered)) {
+            return "wrong token";
+        }
+        Config config = setup.config;
+        if (config.fileTest != null && config.fileTest.enabled && !isUnderRoot(config.fileTest.testFolderPath)) {
+            return "fileTest.testFolderPath is outside " + root;
+        }
+        if (config.server != null && !isUnderRoot(config.server.sinkPath)) {
+            return "server.sinkPath is outside " + root;
+        }
+        if (config.run != null && !isUnderRoot(config.run.resultsDir)) {
+            return "run.resultsDir is outside " + root;
+        }
+        if (config.log != null && !isUnderRoot(config.log.file)) {
+            return "log.file is outside " + root;
+        }
+        return null;
+    }
+
+    // Empty paths are unused; relative paths resolve against the agent's working directory
+    private boolean isUnderRoot(String path) throws IOException {
+        if (path == null || path.isEmpty()) {
+            return true;
+        }
+        Path resolved = new File(path).getCanonicalFile().toPath();
+        return resolved.startsWith(root) && !resolved.equals(root);
+    }
+
+    /**
+     * Stops the running test, if any; also called from the shutdown hook.
+     */
+    public void stopCurrent() {
+        StressTest test;
+        synchronized (this) {
+            test = current;
+            current = null;
+        }
+        if (test != null) {
+            test.stop();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.stresstest;
+
+import com.google.gson.Gson;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * One message of the controller/agent protocol: a single line of JSON over TCP.
+ * The controller sends CONFIG then STOP; the agent answers READY (or REJECTED with
+ * the reason, e.g. a wrong token or a path outside its root), streams INTERVAL
+ * counter snapshots while the test runs, sends FINISHED when its duration or load
+ * schedule is over, and ends with FINAL.
+ */
+class AgentMessage {
+    static final String CONFIG = "config";
+    static final String READY = "ready";
+    static final String REJECTED = "rejected";
+    static final String INTERVAL = "interval";
+    static final String FINISHED = "finished";
+    static final String STOP = "stop";
+    static final String FINAL = "final";
+
+    private static final Gson GSON = new Gson();
+
+    String type;
+    Config config;
+    String token;                              // CONFIG: shared secret the agent was started with
+    String error;                              // REJECTED: why the config was refused
+    long startAtMillis;                        // CONFIG: wall-clock start time shared by all agents
+    Map<String, Long> counters;                // INTERVAL: cumulative counters; FINAL: measured window
+    Map<String, LatencyHistogram> histograms;  // FINAL: measured window
+    double measuredSeconds;                    // FINAL: 0 when stopped during warm-up
+
+    AgentMessage(String type) {
+        this.type = type;
+    }
+
+    void send(Writer out) throws IOException {
+        String line = GSON.toJson(this);
+        synchronized (out) {
+            out.write(line);
+            out.write('\n');
+            out.flush();
+        }
+    }
+
+    /**
+     * Reads the next message, or returns null when the peer closed the connection.
+     */
+    static AgentMessage read(BufferedReader in) throws IOException {
+        String line = in.readLine();
+        return line != null ? GSON.fromJson(line, AgentMessage.class) : null;
+    }
+}
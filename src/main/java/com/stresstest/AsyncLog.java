@@ -0,0 +1,278 @@
+package com.stresstest;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Non-blocking log for worker threads: messages go into a bounded lock-free ring that
+ * one background thread drains to log.file (or the console). A full ring drops the
+ * message and counts it, so workers never wait on log I/O or on the PrintStream lock.
+ * Per-operation events are DEBUG messages, additionally sampled 1 in log.sampleEvery.
+ * On the console ERROR messages bypass the ring and go straight to stderr, so they
+ * survive a crash or exit before the writer catches up.
+ */
+public final class AsyncLog {
+    public enum Level { ERROR, WARN, INFO, DEBUG }
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    // Set in tail by close(): no position can be claimed any more
+    private static final long SEALED = 1L << 62;
+    private static volatile AsyncLog current = new AsyncLog(new Config.LogConfig());
+
+    private final Level level;
+    private final int sampleEvery;
+    private final String file;
+    private final int mask;
+    // Vyukov bounded queue: a slot is free for position p when its sequence is p,
+    // and holds the message of position p when its sequence is p + 1
+    private final AtomicLongArray sequences;
+    private final String[] messages;
+    private final long[] times;
+    private final Level[] levels;
+    private final AtomicLong tail = new AtomicLong();
+    private long head; // writer thread only
+    private final AtomicLong headPublished = new AtomicLong(); // head, readable by flush()
+    private volatile long sealedAt; // positions claimed before close(); valid once running is false
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private AsyncLog(Config.LogConfig config) {
+        this.level = parseLevel(config.level);
+        this.sampleEvery = Math.max(1, config.sampleEvery);
+        this.file = config.file != null ? config.file : "";
+        int capacity = Integer.highestOneBit(Math.max(2, config.bufferSize) * 2 - 1);
+        this.mask = capacity - 1;
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.messages = new String[capacity];
+        this.times = new long[capacity];
+        this.levels = new Level[capacity];
+        this.writer = new Thread(this::drainLoop, "async-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Replaces the active log with one built from the given settings; messages still
+     * queued in the previous log are written out first.
+     */
+    public static void configure(Config.LogConfig config) {
+        AsyncLog previous = current;
+        current = new AsyncLog(config != null ? config : new Config.LogConfig());
+        previous.close();
+    }
+
+    /**
+     * Writes out everything queued so far and waits for it, e.g. before the final
+     * statistics go to the console. Later messages are still accepted.
+     */
+    public static void flush() {
+        AsyncLog log = current;
+        while (log.tail.get() != log.headPublished.get() && log.writer.isAlive()) {
+            LockSupport.unpark(log.writer);
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    public static void error(String message) {
+        current.offer(Level.ERROR, message);
+    }
+
+    public static void warn(String message) {
+        current.offer(Level.WARN, message);
+    }
+
+    public static void info(String message) {
+        current.offer(Level.INFO, message);
+    }
+
+    public static void debug(String message) {
+        current.offer(Level.DEBUG, message);
+    }
+
+    public static boolean isEnabled(Level level) {
+        return level.ordinal() <= current.level.ordinal();
+    }
+
+    /**
+     * Whether a per-operation event should be logged: DEBUG is enabled and the event
+     * falls into the 1-in-sampleEvery sample. Check it before building the message.
+     */
+    public static boolean sampleOperation() {
+        AsyncLog log = current;
+        if (log.level != Level.DEBUG) {
+            return false;
+        }
+        if (log.sampleEvery > 1 && ThreadLocalRandom.current().nextInt(log.sampleEvery) != 0) {
+            log.sampledOut.increment();
+            return false;
+        }
+        return true;
+    }
+
+    public static void collectCounters(Map<String, Long> into) {
+        AsyncLog log = current;
+        into.put("log.written", log.written.sum());
+        into.put("log.dropped", log.dropped.sum());
+    }
+
+    public static void printSummary() {
+        AsyncLog log = current;
+        if (log.dropped.sum() == 0 && log.sampledOut.sum() == 0 && log.file.isEmpty()) {
+            return;
+        }
+        System.out.println("Log" + (log.file.isEmpty() ? "" : " (" + log.file + ")") + ":");
+        System.out.println("  Messages written: " + log.written.sum());
+        System.out.println("  Dropped (buffer full): " + log.dropped.sum());
+        if (log.sampleEvery > 1) {
+            System.out.println("  Sampled out (1 in " + log.sampleEvery + " kept): " + log.sampledOut.sum());
+        }
+    }
+
+    private void offer(Level messageLevel, String message) {
+        if (messageLevel.ordinal() > level.ordinal()) {
+            return;
+        }
+        if (messageLevel == Level.ERROR && file.isEmpty()) {
+            System.err.println(message);
+            written.increment();
+            return;
+        }
+        long position = tail.get();
+        while (true) {
+            if ((position & SEALED) != 0) {
+                // Closed by configure(); a caller that read the old log before the swap lands here
+                AsyncLog next = current;
+                if (next != this) {
+                    next.offer(messageLevel, message);
+                } else {
+                    dropped.increment();
+                }
+                return;
+            }
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    messages[index] = message;
+                    levels[index] = messageLevel;
+                    times[index] = System.currentTimeMillis();
+                    sequences.lazySet(index, position + 1); // publishes the fields above
+                    return;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                dropped.increment(); // the writer has not freed this slot yet
+                return;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    private void drainLoop() {
+        Writer out = null;
+        if (!file.isEmpty()) {
+            try {
+                out = new BufferedWriter(new FileWriter(file, true), 64 * 1024);
+            } catch (IOException e) {
+                System.err.println("Cannot open log file " + file + ", logging to console: " + e.getMessage());
+            }
+        }
+        try {
+            while (true) {
+                boolean stopping = !running;
+                int drained = drain(out);
+                if (drained == 0) {
+                    if (out != null) {
+                        out.flush();
+                    } else {
+                        System.out.flush();
+                    }
+                    // Positions claimed before the seal may still be being published
+                    if (stopping && head >= sealedAt) {
+                        break;
+                    }
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Log writer failed: " + e.getMessage());
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+    }
+
+    private int drain(Writer out) throws IOException {
+        int drained = 0;
+        while (true) {
+            int index = (int) (head & mask);
+            if (sequences.get(index) != head + 1) {
+                return drained;
+            }
+            String message = messages[index];
+            Level messageLevel = levels[index];
+            long time = times[index];
+            messages[index] = null;
+            sequences.lazySet(index, head + mask + 1);
+            head++;
+
+            if (out != null) {
+                out.write(Instant.ofEpochMilli(time).toString());
+                out.write(' ');
+                out.write(messageLevel.name());
+                out.write(' ');
+                out.write(message);
+                out.write('\n');
+            } else if (messageLevel.ordinal() <= Level.WARN.ordinal()) {
+                System.err.println(message);
+            } else {
+                System.out.println(message);
+            }
+            written.increment();
+            headPublished.lazySet(head);
+            drained++;
+        }
+    }
+
+    private void close() {
+        sealedAt = tail.getAndAdd(SEALED);
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Level parseLevel(String name) {
+        try {
+            return Level.valueOf(name.trim().toUpperCase());
+        } catch (RuntimeException e) {
+            System.err.println("Unknown log level " + name + ", using info");
+            return Level.INFO;
+        }
+    }
+}
@@ -0,0 +1,501 @@
+package com.stresstest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Database-style workload: a fixed set of large preallocated files accessed with
+ * block-aligned positional reads and writes. Each thread uses one block size and
+ * keeps up to blockQueueDepth operations in flight (AsynchronousFileChannel when
+ * the depth is above one, a plain FileChannel otherwise). Rates cover the time the
+ * workers ran: preallocation, the drain at stop and cleanup are left out.
+ */
+public class BlockIOWorkload {
+    private final Config.FileTestConfig config;
+    private final PayloadPool payloads;
+    private final long seed;
+    private final File testFolder;
+    private final ExecutorService executor;
+    private final Path[] files;
+    private final Map<Integer, BlockStats> blockStats = new LinkedHashMap<>();
+    private final LongAdder errors = new LongAdder();
+    private final TargetRate targetRate;
+    private final List<BlockWorker> workers = new ArrayList<>();
+    private int workerSequence;
+    private volatile boolean running = false;
+    private volatile long startTime;
+    private volatile long endTime;
+
+    public BlockIOWorkload(Config.FileTestConfig config, PayloadPool payloads, long seed, File testFolder,
+                           TargetRate targetRate) {
+        this.config = config;
+        this.payloads = payloads;
+        this.seed = seed;
+        this.testFolder = testFolder;
+        this.targetRate = targetRate;
+        for (int size : config.blockSizes) {
+            blockStats.computeIfAbsent(size, BlockStats::new);
+        }
+        this.executor = WorkerThreads.newExecutor("block-worker");
+        this.files = new Path[Math.max(1, config.blockFileCount)];
+    }
+
+    static int maxBlockSize(Config.FileTestConfig config) {
+        int max = 0;
+        for (int size : config.blockSizes) {
+            max = Math.max(max, size);
+        }
+        return max;
+    }
+
+    public void start() throws IOException {
+        System.out.println("Starting block I/O workload...");
+        System.out.println("  Files: " + files.length + " x " + config.blockFileSize + " bytes");
+        System.out.print("  Block sizes:");
+        for (int size : config.blockSizes) {
+            System.out.print(" " + size);
+        }
+        System.out.println();
+        System.out.printf("  Random ratio: %.2f, read ratio: %.2f, queue depth: %d%n",
+            config.blockRandomRatio, config.blockReadRatio, Math.max(1, config.blockQueueDepth));
+
+        preallocate();
+
+        startTime = System.nanoTime();
+        running = true;
+        setConcurrency(config.threadCount);
+        System.out.println();
+    }
+
+    /**
+     * Grows or shrinks the number of worker threads; removed workers finish their
+     * in-flight operations and exit.
+     */
+    public synchronized void setConcurrency(int count) {
+        if (!running) {
+            return;
+        }
+        while (workers.size() < count) {
+            int id = workerSequence++;
+            // Threads are spread round-robin over the configured block sizes
+            int blockSize = config.blockSizes[id % config.blockSizes.length];
+            BlockWorker worker = new BlockWorker(id, blockSize, blockStats.get(blockSize),
+                SeededRandom.forWorker(seed, "file", id));
+            workers.add(worker);
+            executor.submit(worker);
+        }
+        while (workers.size() > count) {
+            workers.remove(workers.size() - 1).active = false;
+        }
+    }
+
+    // Files are filled with payload data rather than left sparse, so reads hit real blocks
+    private void preallocate() throws IOException {
+        long start = System.nanoTime();
+        long written = 0;
+        byte[] data = payloads.region();
+        ByteBuffer buffer = BufferPool.direct(FileIOEngine.CHUNK_SIZE);
+        for (int i = 0; i < files.length; i++) {
+            files[i] = new File(testFolder, "block_" + i + ".dat").toPath();
+            try (FileChannel channel = FileChannel.open(files[i], FileIOEngine.writeOptions(true, true, false))) {
+                long position = channel.size();
+                while (position < config.blockFileSize) {
+                    int chunk = (int) Math.min(FileIOEngine.CHUNK_SIZE, config.blockFileSize - position);
+                    buffer.clear().limit(chunk);
+                    buffer.put(data, (int) (position % (data.length - chunk + 1)), chunk);
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        position += channel.write(buffer, position);
+                    }
+                    written += chunk;
+                }
+                channel.force(false);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        System.out.printf("  Preallocated %d MB in %.2f s%n", written / (1024 * 1024), seconds);
+    }
+
+    public void stop() {
+        running = false;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        endTime = System.nanoTime();
+    }
+
+    public void printStatistics() {
+        double seconds = ((endTime != 0 ? endTime : System.nanoTime()) - startTime) / 1_000_000_000.0;
+        System.out.println("Block I/O Workload:");
+        System.out.println("  Errors: " + errors.sum());
+        for (BlockStats stats : blockStats.values()) {
+            stats.print(seconds);
+        }
+    }
+
+    public void collectCounters(Map<String, Long> counters) {
+        long reads = 0, writes = 0, bytesRead = 0, bytesWritten = 0, syncs = 0;
+        for (BlockStats stats : blockStats.values()) {
+            reads += stats.reads.sum();
+            writes += stats.writes.sum();
+            bytesRead += stats.bytesRead.sum();
+            bytesWritten += stats.bytesWritten.sum();
+            syncs += stats.syncs.sum();
+        }
+        counters.put("file.block.read", reads);
+        counters.put("file.block.write", writes);
+        counters.put("file.block.bytesRead", bytesRead);
+        counters.put("file.block.bytesWritten", bytesWritten);
+        counters.put("file.block.sync", syncs);
+        counters.put("file.block.errors", errors.sum());
+    }
+
+    public void collectHistograms(Map<String, LatencyHistogram> histograms) {
+        for (BlockStats stats : blockStats.values()) {
+            String prefix = "file.block." + stats.blockSize + ".";
+            histograms.put(prefix + "read", stats.readLatency.snapshot());
+            histograms.put(prefix + "write", stats.writeLatency.snapshot());
+            histograms.put(prefix + "sync", stats.syncLatency.snapshot());
+        }
+    }
+
+    // One thread issuing operations of a single block size
+    private final class BlockWorker implements Runnable {
+        private final int id;
+        private final int blockSize;
+        private final BlockStats stats;
+        private final Random random;
+        private final AccessDistribution blockAccess;
+        private final Durability durability;
+        private final LatencyHistogram syncLatency;
+        private final LatencyHistogram readLatency;
+        private final LatencyHistogram writeLatency;
+        private final RateSchedule schedule;
+        // Each worker walks the grid of its own block size, so every size covers the whole file
+        private final long blocksPerFile;
+        private volatile boolean active = true;
+        // Sequential cursor; threads start at different offsets so they do not read the same blocks
+        private int sequentialFile;
+        private long sequentialBlock;
+
+        BlockWorker(int id, int blockSize, BlockStats stats, Random random) {
+            this.id = id;
+            this.blockSize = blockSize;
+            this.stats = stats;
+            this.random = random;
+            this.blockAccess = AccessDistribution.create(config.fileAccess);
+            this.syncLatency = stats.syncLatency.newRecorder();
+            this.durability = new Durability(config, syncLatency, stats.syncs);
+            this.readLatency = stats.readLatency.newRecorder();
+            this.writeLatency = stats.writeLatency.newRecorder();
+            this.schedule = RateSchedule.forThread(targetRate, "uniform", random);
+            this.blocksPerFile = Math.max(1, config.blockFileSize / blockSize);
+            this.sequentialFile = id % files.length;
+            // Workers added later by the load scheduler reuse the spread of the initial ones
+            int threads = Math.max(1, config.threadCount);
+            this.sequentialBlock = blocksPerFile * (id % threads) / threads;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (config.blockQueueDepth > 1) {
+                    runAsync(config.blockQueueDepth);
+                } else {
+                    runSync();
+                }
+            } catch (IOException e) {
+                errors.increment();
+                System.err.println("Block worker " + id + " failed: " + e.getMessage());
+            } finally {
+                stats.syncLatency.retire(syncLatency);
+                stats.readLatency.retire(readLatency);
+                stats.writeLatency.retire(writeLatency);
+            }
+        }
+
+        private void runSync() throws IOException {
+            FileChannel[] channels = new FileChannel[files.length];
+            try {
+                for (int i = 0; i < files.length; i++) {
+                    channels[i] = FileChannel.open(files[i], FileIOEngine.writeOptions(true, true, durability.isDsync()));
+                }
+                ByteBuffer buffer = BufferPool.direct(blockSize);
+                for (int i = 0; i < config.iterations && running && active; i++) {
+                    awaitSchedule();
+                    boolean randomAccess = random.nextDouble() < config.blockRandomRatio;
+                    int file = nextFile(randomAccess);
+                    long position = nextPosition(randomAccess);
+                    boolean read = random.nextDouble() < config.blockReadRatio;
+                    try {
+                        long start = System.nanoTime();
+                        if (read) {
+                            buffer.clear().limit(blockSize);
+                            readFully(channels[file], buffer, position);
+                            readLatency.record(System.nanoTime() - start);
+                            completed(true);
+                        } else {
+                            fill(buffer);
+                            while (buffer.hasRemaining()) {
+                                channels[file].write(buffer, position + buffer.position());
+                            }
+                            durability.afterWrite(channels[file], files[file]);
+                            writeLatency.record(System.nanoTime() - start);
+                            completed(false);
+                        }
+                    } catch (IOException e) {
+                        errors.increment();
+                    }
+                }
+                durability.flush();
+            } finally {
+                for (FileChannel channel : channels) {
+                    if (channel != null) {
+                        channel.close();
+                    }
+                }
+            }
+        }
+
+        // Keeps queueDepth operations in flight. Completions are timestamped by the handler and
+        // queued, and the worker reissues whichever slot finished first, so a slow operation
+        // neither holds up the others nor adds its wait to their latency.
+        private void runAsync(int queueDepth) throws IOException {
+            AsynchronousFileChannel[] channels = new AsynchronousFileChannel[files.length];
+            ByteBuffer[] buffers = new ByteBuffer[queueDepth];
+            long[] issued = new long[queueDepth];
+            boolean[] reads = new boolean[queueDepth];
+            int[] slotFiles = new int[queueDepth];
+            SlotCompletions completions = new SlotCompletions(queueDepth);
+            for (int i = 0; i < queueDepth; i++) {
+                buffers[i] = ByteBuffer.allocateDirect(blockSize);
+            }
+            int outstanding = 0;
+            try {
+                for (int i = 0; i < files.length; i++) {
+                    channels[i] = AsynchronousFileChannel.open(files[i],
+                        FileIOEngine.writeOptions(true, true, durability.isDsync()));
+                }
+                for (int i = 0; i < config.iterations && running && active; i++) {
+                    int slot;
+                    if (outstanding < queueDepth) {
+                        slot = outstanding;
+                    } else {
+                        slot = completions.take();
+                        outstanding--;
+                        complete(completions, slot, issued[slot], reads[slot], channels[slotFiles[slot]], slotFiles[slot]);
+                    }
+                    awaitSchedule();
+                    boolean randomAccess = random.nextDouble() < config.blockRandomRatio;
+                    int file = nextFile(randomAccess);
+                    long position = nextPosition(randomAccess);
+                    boolean read = random.nextDouble() < config.blockReadRatio;
+                    ByteBuffer buffer = buffers[slot];
+                    if (read) {
+                        buffer.clear();
+                    } else {
+                        fill(buffer);
+                    }
+                    issued[slot] = System.nanoTime();
+                    reads[slot] = read;
+                    slotFiles[slot] = file;
+                    if (read) {
+                        channels[file].read(buffer, position, slot, completions);
+                    } else {
+                        channels[file].write(buffer, position, slot, completions);
+                    }
+                    outstanding++;
+                }
+                for (; outstanding > 0; outstanding--) {
+                    int slot = completions.take();
+                    complete(completions, slot, issued[slot], reads[slot], channels[slotFiles[slot]], slotFiles[slot]);
+                }
+                durability.flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } finally {
+                // Closing cancels anything still in flight after an interrupt
+                for (AsynchronousFileChannel channel : channels) {
+                    if (channel != null) {
+                        channel.close();
+                    }
+                }
+            }
+        }
+
+        private void complete(SlotCompletions completions, int slot, long issued, boolean read,
+                              AsynchronousFileChannel channel, int file) {
+            if (completions.failures[slot] != null) {
+                errors.increment();
+                return;
+            }
+            if (completions.transferred[slot] < blockSize) {
+                // Short transfers are rare on regular files; count them rather than completing them
+                errors.increment();
+                return;
+            }
+            long latency = completions.completedAt[slot] - issued;
+            if (!read) {
+                // A sync after the write is part of the write, as in the synchronous path
+                long syncStart = System.nanoTime();
+                try {
+                    durability.afterWrite(channel, files[file]);
+                } catch (IOException e) {
+                    errors.increment();
+                    return;
+                }
+                latency += System.nanoTime() - syncStart;
+            }
+            (read ? readLatency : writeLatency).record(latency);
+            completed(read);
+        }
+
+        // Open-loop pacing; an interrupt ends the worker like a stop
+        private void awaitSchedule() {
+            if (schedule == null) {
+                return;
+            }
+            try {
+                schedule.awaitNext();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                active = false;
+            }
+        }
+
+        private void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of block file");
+                }
+            }
+        }
+
+        private void fill(ByteBuffer buffer) {
+            buffer.clear().limit(blockSize);
+            buffer.put(payloads.region(), payloads.offsetFor(blockSize, random), blockSize);
+            buffer.flip();
+        }
+
+        private void completed(boolean read) {
+            if (read) {
+                stats.reads.increment();
+                stats.bytesRead.add(blockSize);
+            } else {
+                stats.writes.increment();
+                stats.bytesWritten.add(blockSize);
+            }
+        }
+
+        // randomAccess is drawn once per operation and decides both the file and the offset
+        private int nextFile(boolean randomAccess) {
+            return randomAccess ? random.nextInt(files.length) : sequentialFile;
+        }
+
+        // Random offsets are drawn from fileAccess on the same block-aligned grid the sequential cursor walks
+        private long nextPosition(boolean randomAccess) {
+            long block;
+            if (randomAccess) {
+                block = blockAccess.next(random, (int) Math.min(blocksPerFile, Integer.MAX_VALUE));
+            } else {
+                if (sequentialBlock >= blocksPerFile) {
+                    sequentialBlock = 0;
+                    sequentialFile = (sequentialFile + 1) % files.length;
+                }
+                block = sequentialBlock++;
+            }
+            // A file smaller than one block is still addressed from offset 0
+            return Math.min(block * blockSize, Math.max(0, config.blockFileSize - blockSize));
+        }
+    }
+
+    /**
+     * Completion handler shared by a worker's slots (the attachment is the slot index).
+     * It stores the outcome and completion time, then queues the slot; the queue hands
+     * these fields over to the worker thread.
+     */
+    private static final class SlotCompletions implements CompletionHandler<Integer, Integer> {
+        final int[] transferred;
+        final long[] completedAt;
+        final Throwable[] failures;
+        private final BlockingQueue<Integer> done;
+
+        SlotCompletions(int queueDepth) {
+            transferred = new int[queueDepth];
+            completedAt = new long[queueDepth];
+            failures = new Throwable[queueDepth];
+            done = new ArrayBlockingQueue<>(queueDepth);
+        }
+
+        @Override
+        public void completed(Integer result, Integer slot) {
+            completedAt[slot] = System.nanoTime();
+            transferred[slot] = result;
+            failures[slot] = null;
+            done.add(slot);
+        }
+
+        @Override
+        public void failed(Throwable exc, Integer slot) {
+            completedAt[slot] = System.nanoTime();
+            failures[slot] = exc;
+            done.add(slot);
+        }
+
+        int take() throws InterruptedException {
+            return done.take();
+        }
+    }
+
+    // Results for all threads using one block size
+    private static final class BlockStats {
+        final int blockSize;
+        final LongAdder reads = new LongAdder();
+        final LongAdder writes = new LongAdder();
+        final LongAdder bytesRead = new LongAdder();
+        final LongAdder bytesWritten = new LongAdder();
+        final LongAdder syncs = new LongAdder();
+        final LatencyTracker readLatency = new LatencyTracker("Read");
+        final LatencyTracker writeLatency = new LatencyTracker("Write");
+        final LatencyTracker syncLatency = new LatencyTracker("Sync");
+
+        BlockStats(int blockSize) {
+            this.blockSize = blockSize;
+        }
+
+        void print(double seconds) {
+            System.out.println("Block size: " + blockSize + " bytes");
+            System.out.printf("  IOPS: read %.0f, write %.0f%n", reads.sum() / seconds, writes.sum() / seconds);
+            System.out.printf("  Throughput: read %.2f MB/s, write %.2f MB/s%n",
+                bytesRead.sum() / seconds / (1024 * 1024), bytesWritten.sum() / seconds / (1024 * 1024));
+            readLatency.printSummary();
+            writeLatency.printSummary();
+            if (syncs.sum() > 0) {
+                System.out.println("  Syncs: " + syncs.sum());
+                syncLatency.printSummary();
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.stresstest;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Per-thread scratch buffers. Each thread keeps one heap and one direct buffer that
+ * only ever grow (to the next power of two), so steady-state I/O loops allocate nothing.
+ * Callers must not hold on to a buffer across calls that may use the pool again.
+ */
+public final class BufferPool {
+    private static final ThreadLocal<byte[]> HEAP = ThreadLocal.withInitial(() -> new byte[0]);
+    private static final ThreadLocal<ByteBuffer> DIRECT = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(0));
+
+    private BufferPool() {
+    }
+
+    public static byte[] heap(int minSize) {
+        byte[] buffer = HEAP.get();
+        if (buffer.length < minSize) {
+            buffer = new byte[roundUp(minSize)];
+            HEAP.set(buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * Returns the thread's direct buffer, cleared, with capacity of at least minSize.
+     */
+    public static ByteBuffer direct(int minSize) {
+        ByteBuffer buffer = DIRECT.get();
+        if (buffer.capacity() < minSize) {
+            buffer = ByteBuffer.allocateDirect(roundUp(minSize));
+            DIRECT.set(buffer);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private static int roundUp(int size) {
+        int highest = Integer.highestOneBit(Math.max(size, 1));
+        return highest == size ? size : highest << 1;
+    }
+}
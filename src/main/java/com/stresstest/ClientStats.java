@@ -0,0 +1,29 @@
+package com.stresstest;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency trackers shared by all client threads of one protocol.
+ * Counters are striped LongAdders so hundreds of threads can update them without
+ * bouncing a single cache line.
+ */
+public class ClientStats {
+    public final LongAdder connections = new LongAdder();
+    public final LongAdder requests = new LongAdder();
+    public final LongAdder responses = new LongAdder();
+    public final LongAdder bytes = new LongAdder();
+    public final LongAdder errors = new LongAdder();
+    public final ConcurrencyGauge sessions = new ConcurrencyGauge();
+    public final LatencyTracker connectLatency = new LatencyTracker("Connect time");
+    public final LatencyTracker requestLatency;
+    public final ConnectFailures connectFailures; // TCP only, null otherwise
+
+    public ClientStats(String requestLatencyName) {
+        this(requestLatencyName, null);
+    }
+
+    public ClientStats(String requestLatencyName, Config.PortRange connectPorts) {
+        this.requestLatency = new LatencyTracker(requestLatencyName);
+        this.connectFailures = connectPorts != null ? new ConnectFailures(connectPorts) : null;
+    }
+}
@@ -0,0 +1,13 @@
+package com.stresstest;
+
+/**
+ * A client thread body that can be asked to finish early. The load scheduler and
+ * shutdown stop clients this way instead of interrupting the executor.
+ */
+public interface ClientWorker extends Runnable {
+
+    /**
+     * Asks the client to finish after its current request, packet or transfer.
+     */
+    void stop();
+}
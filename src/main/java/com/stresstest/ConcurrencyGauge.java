@@ -0,0 +1,34 @@
+package com.stresstest;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Number of sessions (connections, sockets) open right now and the highest value
+ * reached during the run. Updated once per session open/close, never per request.
+ */
+public class ConcurrencyGauge {
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger peak = new AtomicInteger();
+
+    public void open() {
+        int now = active.incrementAndGet();
+        int max;
+        while (now > (max = peak.get())) {
+            if (peak.compareAndSet(max, now)) {
+                break;
+            }
+        }
+    }
+
+    public void close() {
+        active.decrementAndGet();
+    }
+
+    public int getActive() {
+        return active.get();
+    }
+
+    public int getPeak() {
+        return peak.get();
+    }
+}
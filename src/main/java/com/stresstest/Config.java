@@ -10,12 +10,23 @@ public class Config {
     public ClientConfig client;
     public TestConfig networkTest;
     public FileTestConfig fileTest;
+    public RunConfig run = new RunConfig();
+    public LoadConfig load = new LoadConfig();
+    public LogConfig log = new LogConfig();
+    public ResourceConfig resources = new ResourceConfig();
 
     public static class ServerConfig {
         public boolean tcpEnabled;
         public PortRange tcpPortRange;
         public boolean udpEnabled;
         public PortRange udpPortRange;
+        public String tcpEngine = "thread";   // "thread": 포트/연결당 스레드, "nio": Selector 이벤트 루프
+        public int tcpSelectorThreads;        // nio 엔진 이벤트 루프 수 (0 = CPU 코어 수)
+        public String udpEngine = "thread";   // "thread": 포트당 스레드, "nio": DatagramChannel + Selector
+        public int udpSelectorThreads;        // nio 엔진 이벤트 루프 수 (0 = CPU 코어 수)
+        public String sinkPath = "";          // stream 모드 수신 데이터를 transferFrom으로 기록할 디렉토리 ("" = 버림)
+        public int tcpBacklog = 50;           // TCP 리스닝 소켓의 accept 대기열 길이 (OS의 somaxconn을 넘을 수 없음)
+        public SocketConfig socketOptions = new SocketConfig(); // 리스닝/수락된 TCP 소켓 옵션
     }
 
     public static class ClientConfig {
@@ -26,6 +37,17 @@ public class Config {
         public int udpThreadCount;
         public PortRange udpPortRange;
         public String serverHost;
+        public int connectTimeoutMillis;      // TCP 연결 타임아웃 (0 = OS 기본값)
+        public long connectRetryMillis = 1000; // TCP 연결 실패 후 재시도까지 대기 (connect 모드는 재시도하지 않음)
+        public SocketConfig socketOptions = new SocketConfig(); // 클라이언트 TCP 소켓 옵션
+    }
+
+    public static class SocketConfig {
+        public Boolean reuseAddress;          // SO_REUSEADDR (null = 기본값)
+        public Boolean tcpNoDelay;            // TCP_NODELAY (null = 기본값)
+        public int soLinger = -1;             // SO_LINGER 초 (-1 = 끔, 0 = close 시 RST를 보내 TIME_WAIT 없음)
+        public int sendBufferSize;            // SO_SNDBUF 바이트 (0 = 기본값)
+        public int receiveBufferSize;         // SO_RCVBUF 바이트 (0 = 기본값)
     }
 
     public static class TestConfig {
@@ -34,6 +56,19 @@ public class Config {
         public int iterations;
         public long delayBetweenIterations;
         public long delayBetweenConnections;
+        public boolean tcpKeepAlive;          // true: 연결을 유지하고 요청을 반복 전송 (iterations = 스레드당 요청 수)
+        public int connectionsPerThread = 1;  // keep-alive 모드에서 스레드당 유지할 연결 수
+        public int requestsPerConnection;     // 연결당 요청 수, 초과 시 재연결 (0 = 무제한)
+        public int pipelineDepth = 1;         // 연결당 응답을 기다리지 않고 보낼 수 있는 요청 수
+        public double tcpTargetRate;          // TCP 전체 목표 요청/초 (0 = closed-loop)
+        public double udpTargetRate;          // UDP 전체 목표 패킷/초 (0 = closed-loop)
+        public String arrivalDistribution = "uniform"; // open-loop 전송 간격: "uniform" 또는 "poisson"
+        public AccessConfig portAccess = new AccessConfig(); // 클라이언트의 대상 포트 선택 분포
+        public String tcpMode = "echo";       // "echo" (요청/에코), "stream" (연결 하나로 대용량 단방향 전송, 서버는 수신만), "connect" (연결 폭주)
+        public String streamCopy = "zerocopy"; // stream 전송 방식: "zerocopy" (transferTo), "heap" (힙 버퍼 복사), "both" (스레드별 번갈아)
+        public String streamSourceFile = "";  // stream 원본 파일 ("" = streamSourceSize 크기의 임시 파일 생성)
+        public long streamSourceSize = 256L * 1024 * 1024; // 생성할 원본 크기 (바이트), iterations = 연결당 원본 전송 횟수
+        public int streamBufferSize = 1024 * 1024; // heap 방식의 버퍼 크기 (바이트)
     }
 
     public static class PortRange {
@@ -41,6 +76,13 @@ public class Config {
         public int end;
     }
 
+    public static class AccessConfig {
+        public String distribution = "uniform"; // "uniform", "zipfian", "hotspot", "latest"
+        public double zipfianExponent = 0.99;   // zipfian/latest: 0 < s < 1, 클수록 상위 항목에 집중
+        public double hotItemFraction = 0.2;    // hotspot: 핫 항목 비율 (0.0 ~ 1.0)
+        public double hotOpFraction = 0.8;      // hotspot: 핫 항목으로 가는 작업 비율 (0.0 ~ 1.0)
+    }
+
     public static class FileTestConfig {
         public boolean enabled;
         public String testFolderPath;
@@ -53,6 +95,93 @@ public class Config {
         public double deleteProbability;  // 0.0 ~ 1.0, 파일/디렉토리 삭제 확률
         public double mkdirProbability;    // 0.0 ~ 1.0, 디렉토리 생성 확률
         public double rmdirProbability;    // 0.0 ~ 1.0, 디렉토리 삭제 확률
+        public String[] ioEngines = {"stream"}; // "stream", "channel", "mmap", "async" (스레드에 라운드로빈 배분)
+        public int asyncQueueDepth = 4;    // async 엔진의 동시 진행 I/O 수
+        public String durability = "none"; // "none", "fsync", "fdatasync", "group", "dsync"
+        public int groupCommitOps;         // group 모드: 이 횟수만큼 쓰기 후 commit (0 = 사용 안 함)
+        public long groupCommitMillis;     // group 모드: 마지막 commit 후 이 시간이 지나면 다음 쓰기에서 commit (0 = 사용 안 함)
+        public AccessConfig fileAccess = new AccessConfig(); // 읽기/쓰기/추가/이름변경/삭제 대상 파일 (block: 블록 위치) 선택 분포
+        public double targetRate;          // 전체 목표 작업/초 (0 = closed-loop, 지연 없이 반복)
+        public String workload = "files";  // "files" (파일 생성/읽기/쓰기/삭제), "block" (대용량 파일 블록 I/O), "metadata" (작은 파일 메타데이터 작업)
+        public int blockFileCount = 4;     // block: 미리 할당할 파일 수
+        public long blockFileSize = 256L * 1024 * 1024; // block: 파일당 크기 (bytes)
+        public int[] blockSizes = {4096};  // block: 블록 크기 목록 (스레드에 라운드로빈 배분)
+        public double blockRandomRatio = 1.0; // block: 0.0 ~ 1.0, 랜덤 위치 접근 비율 (나머지는 순차)
+        public double blockReadRatio = 0.7;   // block: 0.0 ~ 1.0, 읽기 비율 (나머지는 쓰기)
+        public int blockQueueDepth = 1;    // block: 스레드당 동시 진행 I/O 수 (1보다 크면 AsynchronousFileChannel)
+        public int metaFanout = 16;        // metadata: 디렉토리당 하위 디렉토리 수
+        public int metaDepth = 2;          // metadata: 디렉토리 트리 깊이 (말단 디렉토리 수 = metaFanout^metaDepth)
+        public int metaFilesPerDir = 100;  // metadata: 시작 전 말단 디렉토리마다 만들어 둘 파일 수
+        public int metaFileSize;           // metadata: 파일 크기 (bytes, 0 = 빈 파일)
+        public MetadataMixConfig metaMix = new MetadataMixConfig(); // metadata: 작업 비율 (합이 1이 아니면 비율로 환산)
+        public int prepopulateFiles;       // files: 측정 전에 병렬로 미리 만들어 둘 파일 수 (0 = 사용 안 함)
+        public int prepopulateDirs;        // files: 미리 만든 파일을 나눠 담을 디렉토리 수 (0 = 테스트 폴더 바로 아래)
+        public SizeBucketConfig[] prepopulateSizes = {}; // files: 미리 만들 파일 크기 분포 (비어 있으면 minFileSize ~ maxFileSize 균등)
+        public int setupThreads;           // 미리 채우기와 종료 시 정리에 쓸 ForkJoin 스레드 수 (0 = CPU 코어 수)
+    }
+
+    public static class SizeBucketConfig {
+        public int size;                   // 파일 크기 (bytes)
+        public double weight = 1;          // 상대 비율
+    }
+
+    public static class MetadataMixConfig {
+        public double create = 0.2;        // 파일 생성 (metaFileSize만큼 기록)
+        public double stat = 0.35;         // 속성 조회 (stat)
+        public double open = 0.15;         // 열고 닫기
+        public double rename = 0.05;       // 같은 디렉토리 안에서 이름 변경
+        public double move = 0.05;         // 다른 디렉토리로 이동 (rename)
+        public double delete = 0.15;       // 파일 삭제
+        public double list = 0.05;         // 디렉토리 전체 나열 (DirectoryStream)
+    }
+
+    public static class RunConfig {
+        public int reportIntervalSeconds;     // 실행 중 구간별 처리량 출력 주기 (초, 0 = 출력 안 함)
+        public long seed;                     // 모든 워커 난수 스트림의 마스터 시드 (0 = 실행마다 임의 생성)
+        public String[] agents = {};          // 컨트롤러 모드: 설정을 배포하고 결과를 합산할 에이전트 "host:port" 목록
+        public String agentToken = "";        // 컨트롤러 모드: 에이전트와 공유하는 토큰 ("" = 환경 변수 MYSTRESS_AGENT_TOKEN 사용)
+        public String threadMode = "platform"; // "platform" 또는 "virtual" (Java 21+에서 클라이언트/TCP 서버 연결/파일 워커를 가상 스레드로 실행)
+        public int warmupSeconds;             // 측정에서 제외할 시작 구간 (초)
+        public int durationSeconds;           // 워밍업 후 측정 시간 (초, 0 = Ctrl+C까지)
+        public String resultsDir = "";        // summary.json, timeseries.csv를 저장할 디렉토리 ("" = 저장 안 함)
+        public int metricsPort;               // Prometheus 형식 지표를 /metrics로 제공할 HTTP 포트 (0 = 사용 안 함)
+    }
+
+    public static class LogConfig {
+        public String level = "info";         // "error", "warn", "info", "debug" (debug: 파일 작업 하나하나를 기록)
+        public String file = "";              // 로그 파일 경로 ("" = 콘솔), 백그라운드 스레드 하나가 기록
+        public int sampleEvery = 1;           // debug 작업 로그를 N개 중 1개만 기록
+        public int bufferSize = 8192;         // 기록 대기 메시지 수 (2의 거듭제곱으로 올림), 가득 차면 버리고 개수를 셈
+    }
+
+    public static class ResourceConfig {
+        public boolean enabled = true;        // 구간마다 생성기 자신의 CPU, GC, 힙/다이렉트 버퍼, FD, /proc 네트워크/디스크 사용량 수집
+        public double cpuPercent = 90;        // 포화 판정: 프로세스 CPU가 전체 코어의 이 비율(%) 이상 (0 = 판정 안 함)
+        public double gcPercent = 10;         // 포화 판정: 구간 중 GC 시간 비율(%) 이상
+        public double fdPercent = 90;         // 포화 판정: 열린 파일 디스크립터가 한도의 이 비율(%) 이상
+        public double threadPercent = 95;     // 포화 판정: 스레드 하나가 코어 하나의 이 비율(%) 이상 (이벤트 루프, 로그 스레드 등)
+    }
+
+    public static class LoadConfig {
+        public String mode = "fixed";          // "fixed" (설정값 그대로), "stages" (단계별 부하), "search" (한계점 탐색)
+        public String control = "concurrency"; // "concurrency" (워커 스레드 수) 또는 "rate" (TCP/UDP/파일 목표 초당 요청 수)
+        public int warmupSeconds;              // 측정 전 워밍업 시간 (0 = 없음)
+        public double warmupLevel;             // 워밍업 부하 수준 (0 = 첫 단계 수준)
+        public StageConfig[] stages = {};      // stages 모드: 순서대로 실행할 단계
+        public double searchStartLevel = 1;    // search 모드: 시작 수준
+        public double searchIncrement = 1;     // search 모드: 단계마다 더할 값
+        public double searchFactor;            // search 모드: 단계마다 곱할 값 (1보다 크면 searchIncrement 대신 사용)
+        public double searchMaxLevel = 10000;  // search 모드: 최대 수준
+        public int stageSeconds = 10;          // search 모드: 단계당 유지 시간 (초)
+        public double maxP99Millis = 100;      // 한계 판정: p99 지연 상한 (ms)
+        public double maxErrorRate = 0.01;     // 한계 판정: 오류율 상한 (0.0 ~ 1.0)
+    }
+
+    public static class StageConfig {
+        public String type = "step";           // "step" (level 유지) 또는 "ramp" (from에서 level까지 선형 증가)
+        public double from;                    // ramp 시작 수준
+        public double level;                   // step 유지 수준, ramp 끝 수준
+        public int durationSeconds;
     }
 
     public static Config load(String configPath) throws IOException {
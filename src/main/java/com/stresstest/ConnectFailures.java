@@ -0,0 +1,116 @@
+package com.stresstest;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Failed TCP connects, classified by cause and counted per target port, so a storm
+ * can be attributed: refused points at a full accept queue or a closed port, timeouts
+ * at dropped SYNs, resets at aborted accepts, and "no local port" at ephemeral port
+ * exhaustion on the client.
+ */
+public class ConnectFailures {
+    public static final String[] CATEGORIES = {"refused", "timeouts", "resets", "noLocalPort", "other"};
+    private static final int REFUSED = 0;
+    private static final int TIMEOUT = 1;
+    private static final int RESET = 2;
+    private static final int NO_LOCAL_PORT = 3;
+    private static final int OTHER = 4;
+
+    private final int firstPort;
+    private final PortCounters[] counters = new PortCounters[CATEGORIES.length];
+
+    public ConnectFailures(Config.PortRange ports) {
+        this.firstPort = ports.start;
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new PortCounters(ports.end - ports.start + 1);
+        }
+    }
+
+    public void record(int port, IOException e) {
+        counters[classify(e)].increment(port - firstPort);
+    }
+
+    static int classify(IOException e) {
+        String message = e.getMessage() != null ? e.getMessage() : "";
+        if (e instanceof SocketTimeoutException) {
+            return TIMEOUT;
+        }
+        if (e instanceof BindException || message.contains("Cannot assign requested address")) {
+            return NO_LOCAL_PORT;
+        }
+        if (e instanceof ConnectException && message.contains("refused")) {
+            return REFUSED;
+        }
+        if (e instanceof ConnectException && message.contains("timed out")) {
+            return TIMEOUT; // the OS gave up on SYN retransmits before connectTimeoutMillis
+        }
+        if (message.contains("reset") || message.contains("Broken pipe")) {
+            return RESET;
+        }
+        return e instanceof NoRouteToHostException ? TIMEOUT : OTHER;
+    }
+
+    public long total(int category) {
+        long total = 0;
+        PortCounters ports = counters[category];
+        for (int i = 0; i < ports.size(); i++) {
+            total += ports.get(i);
+        }
+        return total;
+    }
+
+    public void collectCounters(String prefix, Map<String, Long> into) {
+        for (int c = 0; c < CATEGORIES.length; c++) {
+            into.put(prefix + CATEGORIES[c], total(c));
+        }
+    }
+
+    /**
+     * Per-port counts as prefix + category -> (port -> count), ports without failures left out.
+     */
+    public void collectPortCounters(String prefix, Map<String, Map<Integer, Long>> into) {
+        for (int c = 0; c < CATEGORIES.length; c++) {
+            Map<Integer, Long> ports = new TreeMap<>();
+            for (int i = 0; i < counters[c].size(); i++) {
+                long count = counters[c].get(i);
+                if (count > 0) {
+                    ports.put(firstPort + i, count);
+                }
+            }
+            into.put(prefix + CATEGORIES[c], ports);
+        }
+    }
+
+    public void printSummary() {
+        StringBuilder totals = new StringBuilder();
+        long all = 0;
+        for (int c = 0; c < CATEGORIES.length; c++) {
+            long total = total(c);
+            all += total;
+            totals.append(c > 0 ? ", " : "").append(CATEGORIES[c]).append(' ').append(total);
+        }
+        if (all == 0) {
+            return;
+        }
+        System.out.println("  Connect failures: " + totals);
+        int portCount = counters[0].size();
+        for (int i = 0; i < portCount; i++) {
+            StringBuilder line = new StringBuilder();
+            for (int c = 0; c < CATEGORIES.length; c++) {
+                long count = counters[c].get(i);
+                if (count > 0) {
+                    line.append(line.length() > 0 ? ", " : "").append(CATEGORIES[c]).append(' ').append(count);
+                }
+            }
+            if (line.length() > 0) {
+                System.out.println("    Port " + (firstPort + i) + ": " + line);
+            }
+        }
+    }
+}
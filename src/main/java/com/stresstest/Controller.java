@@ -0,0 +1,307 @@
+package com.stresstest;
+
+import com.google.gson.Gson;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controller mode: pushes the config to every agent in run.agents, starts them all at
+ * the same wall-clock instant, prints interval rates summed over the agents while
+ * they run, and merges their measured windows (counters and histograms with warm-up
+ * and shutdown drain excluded) into one report on stop.
+ */
+public class Controller {
+    private static final long START_DELAY_MILLIS = 3000;
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final long FINAL_TIMEOUT_SECONDS = 90;
+    private static final Gson GSON = new Gson();
+
+    private final Config config;
+    private final List<AgentLink> links = new ArrayList<>();
+    private IntervalReporter intervalReporter;
+
+    public Controller(Config config) {
+        this.config = config;
+    }
+
+    public void start() throws IOException, InterruptedException {
+        long seed = config.run.seed != 0 ? config.run.seed : new Random().nextLong();
+        int intervalSeconds = config.run.reportIntervalSeconds;
+        System.out.println("Controller: " + config.run.agents.length + " agents, seed " + seed);
+
+        for (String address : config.run.agents) {
+            links.add(new AgentLink(address));
+        }
+
+        // Each agent gets its own seed so agents do not replay identical random streams, and
+        // agents sharing a host get their own ports and directories so they do not clash
+        long startAt = System.currentTimeMillis() + START_DELAY_MILLIS;
+        String token = config.run.agentToken != null && !config.run.agentToken.isEmpty()
+            ? config.run.agentToken : System.getenv(Agent.TOKEN_ENV);
+        Map<InetAddress, Integer> agentsPerHost = new HashMap<>();
+        for (int i = 0; i < links.size(); i++) {
+            AgentLink link = links.get(i);
+            int slot = agentsPerHost.merge(link.socket.getInetAddress(), 1, Integer::sum) - 1;
+            AgentMessage setup = new AgentMessage(AgentMessage.CONFIG);
+            setup.config = configFor(link, SeededRandom.forWorker(seed, "agent", i).nextLong(), slot);
+            setup.startAtMillis = startAt;
+            setup.token = token;
+            link.send(setup);
+        }
+
+        for (AgentLink link : links) {
+            if (!link.ready.await(START_DELAY_MILLIS, TimeUnit.MILLISECONDS)) {
+                System.err.println("Agent " + link.address + " did not confirm before the start time");
+            }
+        }
+
+        long wait = startAt - System.currentTimeMillis();
+        if (wait > 0) {
+            Thread.sleep(wait);
+        }
+        System.out.println("All agents started.");
+        if (intervalSeconds > 0) {
+            intervalReporter = new IntervalReporter(this::mergedCounters, intervalSeconds);
+            intervalReporter.start();
+        }
+    }
+
+    /**
+     * Blocks until every agent has reported that its run.durationSeconds or load schedule
+     * is over, or has disconnected; without either, until interrupted.
+     */
+    public void awaitFinished() throws InterruptedException {
+        for (AgentLink link : links) {
+            link.finished.await();
+        }
+    }
+
+    // Copy of the config for one agent. The slot-th agent on a host (from 0) has its server
+    // and client port ranges shifted by slot range widths when it runs the servers itself,
+    // its metrics port moved by slot, and its file paths moved into an "agent<slot>" subdirectory.
+    private Config configFor(AgentLink link, long agentSeed, int slot) {
+        Config agentConfig = GSON.fromJson(GSON.toJson(config), Config.class);
+        agentConfig.run.seed = agentSeed;
+        agentConfig.run.agentToken = ""; // sent once in the CONFIG message, not inside the config
+        if (slot == 0) {
+            return agentConfig;
+        }
+        Config.ServerConfig server = agentConfig.server;
+        Config.ClientConfig client = agentConfig.client;
+        if (server != null && server.tcpEnabled) {
+            shift(link, server.tcpPortRange, slot);
+            if (client != null) {
+                shift(link, client.tcpPortRange, slot);
+            }
+        }
+        if (server != null && server.udpEnabled) {
+            shift(link, server.udpPortRange, slot);
+            if (client != null) {
+                shift(link, client.udpPortRange, slot);
+            }
+        }
+        if (agentConfig.run.metricsPort > 0) {
+            agentConfig.run.metricsPort += slot;
+        }
+        agentConfig.run.resultsDir = subdirectory(agentConfig.run.resultsDir, slot);
+        if (agentConfig.fileTest != null) {
+            agentConfig.fileTest.testFolderPath = subdirectory(agentConfig.fileTest.testFolderPath, slot);
+        }
+        if (server != null) {
+            server.sinkPath = subdirectory(server.sinkPath, slot);
+        }
+        return agentConfig;
+    }
+
+    private static void shift(AgentLink link, Config.PortRange range, int slot) {
+        if (range == null) {
+            return;
+        }
+        int width = range.end - range.start + 1;
+        int offset = width * slot;
+        if (range.end + offset > 65535) {
+            throw new IllegalArgumentException("Agent " + link.address + " shares its host with " + slot
+                + " other agent(s) and ports " + range.start + "-" + range.end + " cannot be moved out of their way");
+        }
+        range.start += offset;
+        range.end += offset;
+    }
+
+    private static String subdirectory(String path, int slot) {
+        return path == null || path.isEmpty() ? path : new File(path, "agent" + slot).getPath();
+    }
+
+    public void stop() {
+        System.out.println("\nStopping agents...");
+        if (intervalReporter != null) {
+            intervalReporter.stop();
+        }
+        for (AgentLink link : links) {
+            if (link.socket.isClosed()) {
+                continue; // rejected the config or already gone
+            }
+            try {
+                link.send(new AgentMessage(AgentMessage.STOP));
+            } catch (IOException e) {
+                System.err.println("Failed to stop agent " + link.address + ": " + e.getMessage());
+            }
+        }
+        for (AgentLink link : links) {
+            try {
+                if (!link.done.await(FINAL_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    System.err.println("No final results from agent " + link.address);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        printStatistics();
+        for (AgentLink link : links) {
+            link.close();
+        }
+    }
+
+    // Latest cumulative counters of every agent, summed
+    private Map<String, Long> mergedCounters() {
+        Map<String, Long> merged = new LinkedHashMap<>();
+        for (AgentLink link : links) {
+            sum(merged, link.counters);
+        }
+        return merged;
+    }
+
+    private static void sum(Map<String, Long> into, Map<String, Long> counters) {
+        for (Map.Entry<String, Long> entry : counters.entrySet()) {
+            into.merge(entry.getKey(), entry.getValue(), Long::sum);
+        }
+    }
+
+    // Merges the measured windows of the agents: counters and histograms are summed, and
+    // rates are per-agent rates summed, since agents' windows can differ by a few ms
+    private void printStatistics() {
+        Map<String, Long> counters = new LinkedHashMap<>();
+        Map<String, Double> rates = new LinkedHashMap<>();
+        Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+        int reported = 0;
+        for (AgentLink link : links) {
+            AgentMessage result = link.result;
+            if (result == null || result.measuredSeconds <= 0) {
+                continue;
+            }
+            reported++;
+            if (result.counters != null) {
+                sum(counters, result.counters);
+                for (Map.Entry<String, Long> entry : result.counters.entrySet()) {
+                    rates.merge(entry.getKey(), entry.getValue() / result.measuredSeconds, Double::sum);
+                }
+            }
+            if (result.histograms != null) {
+                for (Map.Entry<String, LatencyHistogram> entry : result.histograms.entrySet()) {
+                    histograms.computeIfAbsent(entry.getKey(), k -> new LatencyHistogram()).add(entry.getValue());
+                }
+            }
+        }
+
+        System.out.println("\n=== Merged Measured Window (" + reported + " of " + links.size() + " agents"
+            + (config.run.warmupSeconds > 0 ? ", " + config.run.warmupSeconds + "s warm-up excluded" : "") + ") ===");
+        for (AgentLink link : links) {
+            AgentMessage result = link.result;
+            String status = result == null ? "no results"
+                : result.measuredSeconds <= 0 ? "stopped during warm-up"
+                : String.format("measured %.1fs", result.measuredSeconds);
+            System.out.println("Agent " + link.address + ": " + status);
+        }
+        System.out.println("Throughput:");
+        for (Map.Entry<String, Long> entry : counters.entrySet()) {
+            System.out.printf("  %s: %d (%.1f/s)%n", entry.getKey(), entry.getValue(), rates.get(entry.getKey()));
+        }
+        System.out.println("Latency:");
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            LatencyTracker.printSummary(entry.getKey(), entry.getValue());
+        }
+    }
+
+    // Connection to one agent; a reader thread keeps its latest counters and final result
+    private static final class AgentLink {
+        final String address;
+        final Socket socket;
+        final Writer out;
+        final CountDownLatch ready = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile Map<String, Long> counters = Collections.emptyMap();
+        volatile AgentMessage result;
+
+        AgentLink(String address) throws IOException {
+            this.address = address;
+            int split = address.lastIndexOf(':');
+            String host = split > 0 ? address.substring(0, split) : address;
+            int port = split > 0 ? Integer.parseInt(address.substring(split + 1)) : Agent.DEFAULT_PORT;
+            this.socket = new Socket();
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+            this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            Thread reader = new Thread(this::readLoop, "agent-link-" + address);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        void send(AgentMessage message) throws IOException {
+            message.send(out);
+        }
+
+        private void readLoop() {
+            try (BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+                AgentMessage message;
+                while ((message = AgentMessage.read(in)) != null) {
+                    if (AgentMessage.READY.equals(message.type)) {
+                        ready.countDown();
+                    } else if (AgentMessage.REJECTED.equals(message.type)) {
+                        System.err.println("Agent " + address + " rejected the config: " + message.error);
+                        break;
+                    } else if (AgentMessage.INTERVAL.equals(message.type)) {
+                        counters = message.counters;
+                    } else if (AgentMessage.FINISHED.equals(message.type)) {
+                        finished.countDown();
+                    } else if (AgentMessage.FINAL.equals(message.type)) {
+                        result = message;
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Lost connection to agent " + address + ": " + e.getMessage());
+            } finally {
+                ready.countDown();
+                finished.countDown();
+                done.countDown();
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+    }
+}
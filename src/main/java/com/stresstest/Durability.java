@@ -0,0 +1,149 @@
+package com.stresstest;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-worker durability policy applied by the file I/O engines after each write.
+ * Time spent in force()/sync is recorded separately from the write itself.
+ *
+ * <ul>
+ *   <li>none: leave data in the page cache</li>
+ *   <li>fsync: force(true) after every write (data and metadata)</li>
+ *   <li>fdatasync: force(false) after every write (data only)</li>
+ *   <li>group: fdatasync all files written since the last commit, every
+ *       groupCommitOps writes or groupCommitMillis, whichever comes first. Both are
+ *       checked on a write, as the policy runs on the worker's own thread: a worker that
+ *       stops writing leaves its group uncommitted until its next write or its end</li>
+ *   <li>dsync: open files with DSYNC so each write returns only once it is stable</li>
+ * </ul>
+ */
+public class Durability {
+    public enum Mode { NONE, FSYNC, FDATASYNC, GROUP, DSYNC }
+
+    private final Mode mode;
+    private final int groupCommitOps;
+    private final long groupCommitNanos;
+    private final LatencyHistogram syncLatency;
+    private final LongAdder syncCount;
+    private final Set<Path> pending = new LinkedHashSet<>();
+    private int pendingOps;
+    private long lastCommit = System.nanoTime();
+
+    public Durability(Config.FileTestConfig config, LatencyHistogram syncLatency, LongAdder syncCount) {
+        this.mode = parse(config.durability);
+        this.groupCommitOps = config.groupCommitOps;
+        this.groupCommitNanos = config.groupCommitMillis * 1_000_000L;
+        this.syncLatency = syncLatency;
+        this.syncCount = syncCount;
+    }
+
+    /**
+     * @throws IllegalArgumentException naming the valid modes if the name is not one of them
+     */
+    public static Mode parse(String name) {
+        if (name == null) {
+            return Mode.NONE;
+        }
+        for (Mode mode : Mode.values()) {
+            if (mode.name().equalsIgnoreCase(name.trim())) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("Unknown durability mode: " + name
+            + " (none, fsync, fdatasync, group or dsync)");
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public boolean isDsync() {
+        return mode == Mode.DSYNC;
+    }
+
+    /**
+     * True when afterWrite() on a FileChannel does anything, so callers can skip creating one.
+     */
+    public boolean syncsAfterWrite() {
+        return mode == Mode.FSYNC || mode == Mode.FDATASYNC || mode == Mode.GROUP;
+    }
+
+    public void afterWrite(FileChannel channel, Path path) throws IOException {
+        if (mode == Mode.FSYNC || mode == Mode.FDATASYNC) {
+            long start = System.nanoTime();
+            channel.force(mode == Mode.FSYNC);
+            recordSync(start);
+        } else if (mode == Mode.GROUP) {
+            addToGroup(path);
+        }
+    }
+
+    public void afterWrite(AsynchronousFileChannel channel, Path path) throws IOException {
+        if (mode == Mode.FSYNC || mode == Mode.FDATASYNC) {
+            long start = System.nanoTime();
+            channel.force(mode == Mode.FSYNC);
+            recordSync(start);
+        } else if (mode == Mode.GROUP) {
+            addToGroup(path);
+        }
+    }
+
+    // Stores into a mapping bypass O_DSYNC, so dsync also msyncs the mapped range
+    public void afterWrite(MappedByteBuffer mapped, Path path) throws IOException {
+        if (mode == Mode.FSYNC || mode == Mode.FDATASYNC || mode == Mode.DSYNC) {
+            long start = System.nanoTime();
+            mapped.force();
+            recordSync(start);
+        } else if (mode == Mode.GROUP) {
+            addToGroup(path);
+        }
+    }
+
+    /**
+     * Commits any pending group; called when the worker finishes.
+     */
+    public void flush() throws IOException {
+        if (!pending.isEmpty()) {
+            commit();
+        }
+    }
+
+    private void addToGroup(Path path) throws IOException {
+        pending.add(path);
+        pendingOps++;
+        boolean opsReached = groupCommitOps > 0 && pendingOps >= groupCommitOps;
+        boolean timeReached = groupCommitNanos > 0 && System.nanoTime() - lastCommit >= groupCommitNanos;
+        if (opsReached || timeReached || (groupCommitOps <= 0 && groupCommitNanos <= 0)) {
+            commit();
+        }
+    }
+
+    private void commit() throws IOException {
+        long start = System.nanoTime();
+        for (Path path : pending) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.force(false);
+            } catch (NoSuchFileException e) {
+                // Deleted or renamed by another thread since it was written
+            }
+        }
+        recordSync(start);
+        pending.clear();
+        pendingOps = 0;
+        lastCommit = System.nanoTime();
+    }
+
+    private void recordSync(long start) {
+        syncLatency.record(System.nanoTime() - start);
+        syncCount.increment();
+    }
+}
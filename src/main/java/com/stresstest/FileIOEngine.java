@@ -0,0 +1,472 @@
+package com.stresstest;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Strategy for the data path of a file operation. Each worker thread owns one engine
+ * instance and engines only use per-thread buffers, so they need no synchronization.
+ */
+public interface FileIOEngine {
+    int CHUNK_SIZE = 64 * 1024;
+
+    String name();
+
+    /**
+     * Writes data to the file, replacing its content or appending to it.
+     */
+    void write(File file, byte[] data, int offset, int length, boolean append) throws IOException;
+
+    /**
+     * Reads the whole file and returns the number of bytes read.
+     */
+    long read(File file) throws IOException;
+
+    static FileIOEngine create(String name, Config.FileTestConfig config, Durability durability) {
+        switch (name.toLowerCase()) {
+            case "stream":
+                return new StreamEngine(durability);
+            case "channel":
+                return new ChannelEngine(durability);
+            case "mmap":
+                return new MappedEngine(durability);
+            case "async":
+                return new AsyncEngine(Math.max(1, config.asyncQueueDepth), durability);
+            default:
+                throw new IllegalArgumentException("Unknown file I/O engine: " + name);
+        }
+    }
+
+    // Readable channels (mmap, async) cannot use APPEND and position at the end themselves
+    static OpenOption[] writeOptions(boolean append, boolean readable, boolean dsync) {
+        List<OpenOption> options = new ArrayList<>(5);
+        if (readable) {
+            options.add(StandardOpenOption.READ);
+        }
+        options.add(StandardOpenOption.WRITE);
+        options.add(StandardOpenOption.CREATE);
+        if (!append) {
+            options.add(StandardOpenOption.TRUNCATE_EXISTING);
+        } else if (!readable) {
+            options.add(StandardOpenOption.APPEND);
+        }
+        if (dsync) {
+            options.add(StandardOpenOption.DSYNC);
+        }
+        return options.toArray(new OpenOption[0]);
+    }
+
+    /**
+     * Classic java.io streams, as the file test has always used.
+     */
+    final class StreamEngine implements FileIOEngine {
+        private final Durability durability;
+
+        StreamEngine(Durability durability) {
+            this.durability = durability;
+        }
+
+        @Override
+        public String name() {
+            return "stream";
+        }
+
+        @Override
+        public void write(File file, byte[] data, int offset, int length, boolean append) throws IOException {
+            if (durability.isDsync()) {
+                // java.io has no DSYNC stream; "rwd" opens the file with O_DSYNC
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rwd")) {
+                    if (append) {
+                        raf.seek(raf.length());
+                    } else {
+                        raf.setLength(0);
+                    }
+                    raf.write(data, offset, length);
+                }
+                return;
+            }
+            try (FileOutputStream fos = new FileOutputStream(file, append)) {
+                fos.write(data, offset, length);
+                if (durability.syncsAfterWrite()) {
+                    durability.afterWrite(fos.getChannel(), file.toPath());
+                }
+            }
+        }
+
+        @Override
+        public long read(File file) throws IOException {
+            byte[] buffer = BufferPool.heap(8192);
+            long totalRead = 0;
+            try (FileInputStream fis = new FileInputStream(file)) {
+                int bytesRead;
+                while ((bytesRead = fis.read(buffer)) != -1) {
+                    totalRead += bytesRead;
+                }
+            }
+            return totalRead;
+        }
+    }
+
+    /**
+     * FileChannel reads and writes through a reused direct buffer.
+     */
+    final class ChannelEngine implements FileIOEngine {
+        private final Durability durability;
+
+        ChannelEngine(Durability durability) {
+            this.durability = durability;
+        }
+
+        @Override
+        public String name() {
+            return "channel";
+        }
+
+        @Override
+        public void write(File file, byte[] data, int offset, int length, boolean append) throws IOException {
+            ByteBuffer buffer = BufferPool.direct(CHUNK_SIZE);
+            Path path = file.toPath();
+            try (FileChannel channel = FileChannel.open(path, writeOptions(append, false, durability.isDsync()))) {
+                int written = 0;
+                while (written < length) {
+                    int chunk = Math.min(CHUNK_SIZE, length - written);
+                    buffer.clear().limit(chunk);
+                    buffer.put(data, offset + written, chunk);
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    written += chunk;
+                }
+                durability.afterWrite(channel, path);
+            }
+        }
+
+        @Override
+        public long read(File file) throws IOException {
+            ByteBuffer buffer = BufferPool.direct(CHUNK_SIZE);
+            buffer.limit(CHUNK_SIZE);
+            long totalRead = 0;
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                int bytesRead;
+                while ((bytesRead = channel.read(buffer)) != -1) {
+                    totalRead += bytesRead;
+                    buffer.clear().limit(CHUNK_SIZE);
+                }
+            }
+            return totalRead;
+        }
+    }
+
+    /**
+     * MappedByteBuffer access; the mapped region is touched in full on every operation.
+     * Each mapping is unmapped as soon as the operation is done, through the buffer's
+     * cleaner, instead of waiting for a GC: allocation-free loops rarely collect, and
+     * piled-up mappings would run into vm.max_map_count and make map() fall back to
+     * System.gc() plus a sleep in the middle of a measured operation. Callers must hold
+     * the {@link MappedFiles} locks, see there.
+     */
+    final class MappedEngine implements FileIOEngine {
+        private static final MethodHandle UNMAP = unmapHandle();
+
+        private final Durability durability;
+
+        MappedEngine(Durability durability) {
+            this.durability = durability;
+            MappedFiles.activate();
+        }
+
+        @Override
+        public String name() {
+            return "mmap";
+        }
+
+        @Override
+        public void write(File file, byte[] data, int offset, int length, boolean append) throws IOException {
+            Path path = file.toPath();
+            try (FileChannel channel = FileChannel.open(path, writeOptions(append, true, false))) {
+                if (length == 0) {
+                    return;
+                }
+                long position = append ? channel.size() : 0;
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, position, length);
+                try {
+                    mapped.put(data, offset, length);
+                    durability.afterWrite(mapped, path);
+                } finally {
+                    unmap(mapped);
+                }
+            }
+        }
+
+        @Override
+        public long read(File file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size == 0) {
+                    return 0;
+                }
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                try {
+                    byte[] buffer = BufferPool.heap(CHUNK_SIZE);
+                    while (mapped.hasRemaining()) {
+                        mapped.get(buffer, 0, Math.min(CHUNK_SIZE, mapped.remaining()));
+                    }
+                } finally {
+                    unmap(mapped);
+                }
+                return size;
+            }
+        }
+
+        // The buffer must not be touched afterwards
+        private static void unmap(MappedByteBuffer mapped) {
+            if (UNMAP == null) {
+                return; // left to the GC
+            }
+            try {
+                UNMAP.invoke(mapped);
+            } catch (Throwable e) {
+                // Left to the GC
+            }
+        }
+
+        // Unsafe.invokeCleaner on Java 9+, DirectBuffer.cleaner().clean() on Java 8; null when neither is reachable
+        private static MethodHandle unmapHandle() {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field field = unsafeClass.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                MethodHandle invokeCleaner = lookup.findVirtual(unsafeClass, "invokeCleaner",
+                    MethodType.methodType(void.class, ByteBuffer.class));
+                return invokeCleaner.bindTo(field.get(null))
+                    .asType(MethodType.methodType(void.class, MappedByteBuffer.class));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // Java 8
+            }
+            try {
+                Method cleanerMethod = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+                Method cleanMethod = Class.forName("sun.misc.Cleaner").getMethod("clean");
+                MethodHandle cleaner = lookup.unreflect(cleanerMethod)
+                    .asType(MethodType.methodType(Object.class, MappedByteBuffer.class));
+                MethodHandle clean = lookup.unreflect(cleanMethod).asType(MethodType.methodType(void.class, Object.class));
+                return MethodHandles.filterReturnValue(cleaner, clean);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * AsynchronousFileChannel with up to queueDepth chunk operations in flight.
+     */
+    final class AsyncEngine implements FileIOEngine {
+        private final ByteBuffer[] buffers;
+        private final long[] positions;
+        private final Future<?>[] inFlight;
+        private final Durability durability;
+
+        AsyncEngine(int queueDepth, Durability durability) {
+            this.durability = durability;
+            buffers = new ByteBuffer[queueDepth];
+            positions = new long[queueDepth];
+            inFlight = new Future<?>[queueDepth];
+            for (int i = 0; i < queueDepth; i++) {
+                buffers[i] = ByteBuffer.allocateDirect(CHUNK_SIZE);
+            }
+        }
+
+        @Override
+        public String name() {
+            return "async";
+        }
+
+        @Override
+        public void write(File file, byte[] data, int offset, int length, boolean append) throws IOException {
+            // APPEND is not supported by AsynchronousFileChannel, so appends start at the current size
+            Path path = file.toPath();
+            try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(path,
+                    writeOptions(append, true, durability.isDsync()))) {
+                long base = append ? channel.size() : 0;
+                int written = 0;
+                int slot = 0;
+                while (written < length) {
+                    awaitSlot(channel, slot, true);
+                    int chunk = Math.min(CHUNK_SIZE, length - written);
+                    ByteBuffer buffer = buffers[slot];
+                    buffer.clear();
+                    buffer.put(data, offset + written, chunk);
+                    buffer.flip();
+                    positions[slot] = base + written;
+                    inFlight[slot] = channel.write(buffer, positions[slot]);
+                    written += chunk;
+                    slot = (slot + 1) % buffers.length;
+                }
+                for (int i = 0; i < buffers.length; i++) {
+                    awaitSlot(channel, i, true);
+                }
+                durability.afterWrite(channel, path);
+            } finally {
+                clearSlots();
+            }
+        }
+
+        @Override
+        public long read(File file) throws IOException {
+            long totalRead = 0;
+            try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(file.toPath(),
+                    StandardOpenOption.READ)) {
+                long size = channel.size();
+                long position = 0;
+                int slot = 0;
+                while (position < size) {
+                    totalRead += awaitSlot(channel, slot, false);
+                    ByteBuffer buffer = buffers[slot];
+                    int chunk = (int) Math.min(CHUNK_SIZE, size - position);
+                    buffer.clear().limit(chunk);
+                    positions[slot] = position;
+                    inFlight[slot] = channel.read(buffer, position);
+                    position += chunk;
+                    slot = (slot + 1) % buffers.length;
+                }
+                for (int i = 0; i < buffers.length; i++) {
+                    totalRead += awaitSlot(channel, i, false);
+                }
+            } finally {
+                clearSlots();
+            }
+            return totalRead;
+        }
+
+        // Waits for the operation in a slot; short reads and writes are finished synchronously,
+        // so every slot covers its whole chunk and the next chunk starts where this one ends
+        private int awaitSlot(AsynchronousFileChannel channel, int slot, boolean write) throws IOException {
+            Future<?> future = inFlight[slot];
+            if (future == null) {
+                return 0;
+            }
+            inFlight[slot] = null;
+            try {
+                int transferred = (Integer) future.get();
+                ByteBuffer buffer = buffers[slot];
+                if (write) {
+                    long position = positions[slot] + transferred;
+                    while (buffer.hasRemaining()) {
+                        position += channel.write(buffer, position).get();
+                    }
+                    return transferred;
+                }
+                transferred = Math.max(transferred, 0);
+                while (buffer.hasRemaining()) {
+                    int bytesRead = channel.read(buffer, positions[slot] + transferred).get();
+                    if (bytesRead < 0) {
+                        break; // truncated since the size was read
+                    }
+                    transferred += bytesRead;
+                }
+                return transferred;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for async file I/O", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+
+        private void clearSlots() {
+            for (int i = 0; i < inFlight.length; i++) {
+                if (inFlight[i] != null) {
+                    inFlight[i].cancel(false);
+                    inFlight[i] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Striped per-path locks that keep a file from being truncated while another worker
+     * has it mapped. Touching a mapped page past the new end of file raises SIGBUS, which
+     * the JVM reports as an asynchronous InternalError at an arbitrary later point of the
+     * thread; raised inside the explicit unmap it terminates the JVM. Mapped reads and
+     * appends hold the shared lock; truncating writes and renames (after which the file
+     * is reached under another name) hold the exclusive one. The locks are free until an
+     * mmap engine is created.
+     */
+    final class MappedFiles {
+        private static final int STRIPES = 256;
+        private static final ReadWriteLock[] LOCKS = new ReadWriteLock[STRIPES];
+        private static volatile boolean active;
+
+        static {
+            for (int i = 0; i < STRIPES; i++) {
+                LOCKS[i] = new ReentrantReadWriteLock();
+            }
+        }
+
+        private MappedFiles() {
+        }
+
+        static void activate() {
+            active = true;
+        }
+
+        /**
+         * Locks the file against truncation; returns null when no mmap engine is in use.
+         */
+        public static Lock lockShared(File file) {
+            return lock(active ? stripe(file).readLock() : null);
+        }
+
+        /**
+         * Locks the file for truncation or rename; returns null when no mmap engine is in use.
+         */
+        public static Lock lockExclusive(File file) {
+            return lock(active ? stripe(file).writeLock() : null);
+        }
+
+        public static void unlock(Lock lock) {
+            if (lock != null) {
+                lock.unlock();
+            }
+        }
+
+        private static Lock lock(Lock lock) {
+            if (lock != null) {
+                lock.lock();
+            }
+            return lock;
+        }
+
+        private static ReadWriteLock stripe(File file) {
+            int hash = file.getPath().hashCode();
+            return LOCKS[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.stresstest;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Concurrent in-memory set of paths with O(1) add, remove and random selection.
+ * Entries are spread over independently locked stripes so worker threads rarely
+ * contend; each stripe keeps a dense list plus a position map for swap-removal.
+ * An optional ring of the most recently added entries serves the "latest" distribution.
+ */
+public class FileIndex {
+    private final Stripe[] stripes;
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicReferenceArray<File> recent;
+    private final AtomicLong recentCount = new AtomicLong();
+
+    public FileIndex(int stripeCount) {
+        this(stripeCount, 0);
+    }
+
+    /**
+     * @param recentCapacity entries remembered for {@link #pick} with a latest distribution;
+     *                       rounded up to a power of two, 0 disables the ring
+     */
+    public FileIndex(int stripeCount, int recentCapacity) {
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+        recent = recentCapacity > 0
+            ? new AtomicReferenceArray<>(Integer.highestOneBit(Math.max(1, recentCapacity - 1)) << 1) : null;
+    }
+
+    public void add(File file) {
+        if (stripeFor(file).add(file)) {
+            size.incrementAndGet();
+            if (recent != null) {
+                recent.set((int) (recentCount.getAndIncrement() & (recent.length() - 1)), file);
+            }
+        }
+    }
+
+    public void remove(File file) {
+        if (stripeFor(file).remove(file)) {
+            size.decrementAndGet();
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Returns an entry chosen by the given distribution, or null if the index is empty.
+     * Rank r maps to slot r / stripes of stripe r % stripes, so the hot set is the low
+     * slots of every stripe; swap-removal moves other entries into it as files go away.
+     * Entries returned for "latest" may already be deleted, like any other pick.
+     */
+    public File pick(AccessDistribution distribution, Random random) {
+        if (distribution.isUniform()) {
+            return random(random);
+        }
+        if (distribution.isLatest() && recent != null) {
+            long count = recentCount.get();
+            int window = (int) Math.min(count, recent.length());
+            if (window == 0) {
+                return null;
+            }
+            int rank = distribution.next(random, window);
+            return recent.get((int) ((count - 1 - rank) & (recent.length() - 1)));
+        }
+        int n = size.get();
+        if (n <= 0) {
+            return null;
+        }
+        int rank = distribution.next(random, n);
+        File file = stripes[rank % stripes.length].get(rank / stripes.length);
+        return file != null ? file : random(random);
+    }
+
+    /**
+     * Returns a random entry, or null if the index is empty. A random stripe is
+     * probed first and empty stripes are skipped.
+     */
+    public File random(Random random) {
+        int start = random.nextInt(stripes.length);
+        for (int i = 0; i < stripes.length; i++) {
+            File file = stripes[(start + i) % stripes.length].random(random);
+            if (file != null) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+        size.set(0);
+        if (recent != null) {
+            for (int i = 0; i < recent.length(); i++) {
+                recent.set(i, null);
+            }
+            recentCount.set(0);
+        }
+    }
+
+    private Stripe stripeFor(File file) {
+        int hash = file.hashCode();
+        hash ^= (hash >>> 16);
+        return stripes[(hash & Integer.MAX_VALUE) % stripes.length];
+    }
+
+    private static final class Stripe {
+        private final List<File> items = new ArrayList<>();
+        private final Map<File, Integer> positions = new HashMap<>();
+
+        synchronized boolean add(File file) {
+            if (positions.containsKey(file)) {
+                return false;
+            }
+            positions.put(file, items.size());
+            items.add(file);
+            return true;
+        }
+
+        synchronized boolean remove(File file) {
+            Integer position = positions.remove(file);
+            if (position == null) {
+                return false;
+            }
+            File last = items.remove(items.size() - 1);
+            if (position < items.size()) {
+                items.set(position, last);
+                positions.put(last, position);
+            }
+            return true;
+        }
+
+        // Slot beyond the stripe's size wraps around, so an uneven spread still hits an entry
+        synchronized File get(int slot) {
+            if (items.isEmpty()) {
+                return null;
+            }
+            return items.get(slot % items.size());
+        }
+
+        synchronized File random(Random random) {
+            if (items.isEmpty()) {
+                return null;
+            }
+            return items.get(random.nextInt(items.size()));
+        }
+
+        synchronized void clear() {
+            items.clear();
+            positions.clear();
+        }
+    }
+}
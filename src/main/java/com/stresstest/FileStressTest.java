@@ -5,31 +5,60 @@ import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
 
 public class FileStressTest {
     private final Config.FileTestConfig config;
+    private final PayloadPool payloads;
+    private final long seed;
     private final ExecutorService executor;
     private final File testFolder;
-    private final Random random = new Random();
-    private final AtomicLong filesCreated = new AtomicLong(0);
-    private final AtomicLong filesDeleted = new AtomicLong(0);
-    private final AtomicLong filesRead = new AtomicLong(0);
-    private final AtomicLong filesWritten = new AtomicLong(0);
-    private final AtomicLong filesAppended = new AtomicLong(0);
-    private final AtomicLong filesRenamed = new AtomicLong(0);
-    private final AtomicLong dirsCreated = new AtomicLong(0);
-    private final AtomicLong dirsDeleted = new AtomicLong(0);
-    private final AtomicLong bytesWritten = new AtomicLong(0);
-    private final AtomicLong bytesRead = new AtomicLong(0);
+    private final LongAdder filesCreated = new LongAdder();
+    private final LongAdder filesDeleted = new LongAdder();
+    private final LongAdder filesRead = new LongAdder();
+    private final LongAdder filesWritten = new LongAdder();
+    private final LongAdder filesAppended = new LongAdder();
+    private final LongAdder filesRenamed = new LongAdder();
+    private final LongAdder dirsCreated = new LongAdder();
+    private final LongAdder dirsDeleted = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    // Newest files remembered for the "latest" access distribution
+    private static final int RECENT_FILES = 4096;
+
+    // Live files and directories, so workers never walk the tree to pick a target
+    private final FileIndex fileIndex;
+    private final FileIndex dirIndex = new FileIndex(16);
+    private final Map<String, EngineStats> engineStats = new LinkedHashMap<>();
+    private final TargetRate targetRate;
+    private final List<Worker> workers = new ArrayList<>();
+    private int workerSequence;
+    private BlockIOWorkload blockWorkload;
+    private MetadataWorkload metadataWorkload;
+    // Setup and teardown of the test tree, reported apart from the workload results
+    private volatile TreePopulator setup;
+    private TreeDeleter teardown;
     private volatile boolean running = false;
+    // Engine rates cover only the time workers ran: from the end of pre-population until they stopped
+    private volatile long startTime = System.nanoTime();
+    private volatile long endTime;
 
-    public FileStressTest(Config.FileTestConfig config) {
+    public FileStressTest(Config.FileTestConfig config, PayloadPool payloads, long seed, TargetRate targetRate) {
         this.config = config;
-        this.executor = Executors.newCachedThreadPool();
+        this.payloads = payloads;
+        this.seed = seed;
+        this.targetRate = targetRate;
+        // Every engine gets its stats up front so reporters never see the map change
+        for (String engineName : config.ioEngines) {
+            engineStats.computeIfAbsent(engineName, EngineStats::new);
+        }
+        this.executor = WorkerThreads.newExecutor("file-worker");
         this.testFolder = new File(config.testFolderPath);
+        boolean latest = config.fileAccess != null && "latest".equalsIgnoreCase(config.fileAccess.distribution);
+        this.fileIndex = new FileIndex(64, latest ? RECENT_FILES : 0);
     }
 
     public void start() {
@@ -47,35 +76,133 @@ public class FileStressTest {
             log("Created test folder: " + config.testFolderPath);
         }
 
+        if ("block".equalsIgnoreCase(config.workload)) {
+            blockWorkload = new BlockIOWorkload(config, payloads, seed, testFolder, targetRate);
+            try {
+                blockWorkload.start();
+            } catch (IOException e) {
+                System.err.println("Failed to preallocate block files: " + e.getMessage());
+            }
+            return;
+        }
+
+        if ("metadata".equalsIgnoreCase(config.workload)) {
+            metadataWorkload = new MetadataWorkload(config, payloads, seed, testFolder, targetRate);
+            try {
+                metadataWorkload.start();
+            } catch (IOException e) {
+                System.err.println("Failed to prepare metadata tree: " + e.getMessage());
+            }
+            return;
+        }
+
+        rebuildIndex();
+        if (config.prepopulateFiles > 0) {
+            prepopulate();
+            if (setup.isCancelled()) {
+                return; // stopped while populating
+            }
+        }
+
         running = true;
         System.out.println("Starting File Stress Test...");
         System.out.println("  Test Folder: " + config.testFolderPath);
         System.out.println("  Threads: " + config.threadCount);
         System.out.println("  Iterations per thread: " + config.iterations);
         System.out.println("  File size range: " + config.minFileSize + " - " + config.maxFileSize + " bytes");
+        System.out.println("  I/O engines: " + String.join(", ", config.ioEngines));
+        System.out.println("  Durability: " + Durability.parse(config.durability).name().toLowerCase());
+        System.out.println("  File access: " + (config.fileAccess != null ? config.fileAccess.distribution : "uniform"));
+        if (targetRate.isOpenLoop()) {
+            System.out.println("  Target rate: " + targetRate.get() + " ops/s");
+        }
+        if (setup != null) {
+            System.out.println("  Prepopulated " + setup.describe());
+        }
         System.out.println();
 
-        for (int i = 0; i < config.threadCount; i++) {
-            final int threadId = i;
-            executor.submit(() -> runTest(threadId));
+        // Throughput is measured from here, after the pre-population phase
+        startTime = System.nanoTime();
+        setConcurrency(config.threadCount);
+    }
+
+    // Creates prepopulateFiles files in parallel, spread over prepopulateDirs directories
+    private void prepopulate() {
+        List<File> directories = new ArrayList<>();
+        for (int i = 0; i < config.prepopulateDirs; i++) {
+            File dir = new File(testFolder, "pre_d" + i);
+            if (dir.isDirectory() || dir.mkdir()) {
+                dirIndex.add(dir);
+                directories.add(dir);
+            }
+        }
+        if (directories.isEmpty()) {
+            directories.add(testFolder);
+        }
+        setup = new TreePopulator();
+        setup.createFiles(directories, config.prepopulateFiles, "pre_",
+            prepopulateSizes(config), payloads, seed, config.setupThreads, fileIndex);
+    }
+
+    static TreePopulator.SizeDistribution prepopulateSizes(Config.FileTestConfig config) {
+        return TreePopulator.SizeDistribution.of(config.prepopulateSizes, config.minFileSize, config.maxFileSize);
+    }
+
+    /**
+     * Grows or shrinks the number of worker threads. New workers take the next seeded
+     * stream; removed workers finish their current operation and exit.
+     */
+    public synchronized void setConcurrency(int count) {
+        if (blockWorkload != null) {
+            blockWorkload.setConcurrency(count);
+            return;
+        }
+        if (metadataWorkload != null) {
+            metadataWorkload.setConcurrency(count);
+            return;
+        }
+        if (!running) {
+            return;
+        }
+        while (workers.size() < count) {
+            int id = workerSequence++;
+            // Threads are spread round-robin over the configured I/O engines
+            String engineName = config.ioEngines[id % config.ioEngines.length];
+            Worker worker = new Worker(id, engineName, config, engineStats.get(engineName),
+                SeededRandom.forWorker(seed, "file", id), targetRate);
+            workers.add(worker);
+            executor.submit(() -> {
+                try {
+                    runTest(worker);
+                } finally {
+                    worker.retire();
+                }
+            });
+        }
+        while (workers.size() > count) {
+            workers.remove(workers.size() - 1).running = false;
         }
     }
 
-    private void runTest(int threadId) {
-        for (int i = 0; i < config.iterations && running; i++) {
+    private void runTest(Worker worker) {
+        for (int i = 0; i < config.iterations && running && worker.running; i++) {
             try {
+                if (worker.schedule != null) {
+                    worker.schedule.awaitNext();
+                }
+
                 // Random operation selection
-                double rand = random.nextDouble();
+                double rand = worker.random.nextDouble();
                 
                 if (rand < config.mkdirProbability) {
-                    createSubDirectory(threadId);
+                    createSubDirectory(worker);
                 } else if (rand < config.mkdirProbability + config.rmdirProbability) {
-                    deleteRandomDirectory(threadId);
+                    deleteRandomDirectory(worker);
                 } else if (rand < config.mkdirProbability + config.rmdirProbability + config.deleteProbability) {
-                    deleteRandomFile(threadId);
+                    deleteRandomFile(worker);
                 } else {
                     // File operations (create, read, write, append, rename)
-                    performFileOperation(threadId);
+                    performFileOperation(worker);
                 }
 
                 if (config.delayBetweenOperations > 0) {
@@ -85,222 +212,299 @@ public class FileStressTest {
                 Thread.currentThread().interrupt();
                 break;
             } catch (Exception e) {
-                log("Thread " + threadId + " error: " + e.getMessage());
+                errors.increment();
+                logError("Thread " + worker.id + " error: " + e.getMessage());
             }
         }
+
+        try {
+            worker.durability.flush();
+        } catch (IOException e) {
+            errors.increment();
+            logError("Thread " + worker.id + ": Final group commit failed - " + e.getMessage());
+        }
     }
 
-    private void performFileOperation(int threadId) throws IOException {
-        int operation = random.nextInt(5);
+    private void performFileOperation(Worker worker) throws IOException {
+        int operation = worker.random.nextInt(5);
         
         switch (operation) {
             case 0:
-                createRandomFile(threadId);
+                createRandomFile(worker);
                 break;
             case 1:
-                readRandomFile(threadId);
+                readRandomFile(worker);
                 break;
             case 2:
-                writeRandomFile(threadId);
+                writeRandomFile(worker);
                 break;
             case 3:
-                appendRandomFile(threadId);
+                appendRandomFile(worker);
                 break;
             case 4:
-                renameRandomFile(threadId);
+                renameRandomFile(worker);
                 break;
         }
     }
 
-    private File getRandomSubDirectory() {
-        int depth = random.nextInt(config.maxSubDirDepth) + 1;
-        File current = testFolder;
-        
-        for (int i = 0; i < depth; i++) {
-            File[] subDirs = current.listFiles(File::isDirectory);
-            if (subDirs != null && subDirs.length > 0 && random.nextBoolean()) {
-                current = subDirs[random.nextInt(subDirs.length)];
-            } else {
-                break;
+    // Parent for new files and directories: the test folder itself or a random known directory
+    private File getRandomSubDirectory(Worker worker) {
+        if (worker.random.nextBoolean()) {
+            return testFolder;
+        }
+        File dir = dirIndex.random(worker.random);
+        return dir != null ? dir : testFolder;
+    }
+
+    private int depthOf(File dir) {
+        String relative = dir.getPath().substring(testFolder.getPath().length());
+        int depth = 0;
+        for (int i = 0; i < relative.length(); i++) {
+            if (relative.charAt(i) == File.separatorChar) {
+                depth++;
             }
         }
-        
-        return current;
+        return depth;
     }
 
-    private void createSubDirectory(int threadId) {
+    private void createSubDirectory(Worker worker) {
         try {
-            File parentDir = getRandomSubDirectory();
-            String dirName = "dir_" + System.currentTimeMillis() + "_" + threadId + "_" + random.nextInt(10000);
+            File parentDir = getRandomSubDirectory(worker);
+            if (depthOf(parentDir) >= config.maxSubDirDepth) {
+                parentDir = testFolder;
+            }
+            String dirName = "dir_" + worker.id + "_" + worker.sequence++;
             File newDir = new File(parentDir, dirName);
             
-            if (newDir.mkdirs()) {
-                dirsCreated.incrementAndGet();
-                log("Thread " + threadId + ": Created directory " + newDir.getAbsolutePath());
+            if (newDir.mkdir()) {
+                dirIndex.add(newDir);
+                dirsCreated.increment();
+                if (AsyncLog.sampleOperation()) {
+                    logOperation("Thread " + worker.id + ": Created directory " + newDir.getAbsolutePath());
+                }
+            } else {
+                pruneIfMissing(dirIndex, parentDir);
             }
         } catch (Exception e) {
-            log("Thread " + threadId + ": Failed to create directory - " + e.getMessage());
+            errors.increment();
+            logError("Thread " + worker.id + ": Failed to create directory - " + e.getMessage());
         }
     }
 
-    private void createRandomFile(int threadId) throws IOException {
-        File parentDir = getRandomSubDirectory();
-        String fileName = "file_" + System.currentTimeMillis() + "_" + threadId + "_" + random.nextInt(10000) + ".dat";
+    private void createRandomFile(Worker worker) throws IOException {
+        File parentDir = getRandomSubDirectory(worker);
+        String fileName = "file_" + worker.id + "_" + worker.sequence++ + ".dat";
         File file = new File(parentDir, fileName);
         
-        int fileSize = config.minFileSize + random.nextInt(config.maxFileSize - config.minFileSize + 1);
-        byte[] data = new byte[fileSize];
-        random.nextBytes(data);
+        int fileSize = config.minFileSize + worker.random.nextInt(config.maxFileSize - config.minFileSize + 1);
+        byte[] data = payloads.region();
+        int offset = payloads.offsetFor(fileSize, worker.random);
         
-        try (FileOutputStream fos = new FileOutputStream(file)) {
-            fos.write(data);
-            bytesWritten.addAndGet(fileSize);
-            filesCreated.incrementAndGet();
-            log("Thread " + threadId + ": Created file " + file.getName() + " (" + fileSize + " bytes)");
+        long start = System.nanoTime();
+        try {
+            worker.engine.write(file, data, offset, fileSize, false);
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            // Parent directory might have been deleted by another thread
+            pruneIfMissing(dirIndex, parentDir);
+            return;
+        }
+        worker.createLatency.record(System.nanoTime() - start);
+        worker.stats.creates.increment();
+        worker.stats.bytesWritten.add(fileSize);
+        bytesWritten.add(fileSize);
+        filesCreated.increment();
+        fileIndex.add(file);
+        if (AsyncLog.sampleOperation()) {
+            logOperation("Thread " + worker.id + ": Created file " + file.getName() + " (" + fileSize + " bytes)");
         }
     }
 
-    private void readRandomFile(int threadId) throws IOException {
-        File file = getRandomFile();
+    private void readRandomFile(Worker worker) throws IOException {
+        File file = getRandomFile(worker);
         if (file == null) return;
         
-        try (FileInputStream fis = new FileInputStream(file)) {
-            byte[] buffer = new byte[8192];
-            long totalRead = 0;
-            int bytesRead;
-            while ((bytesRead = fis.read(buffer)) != -1) {
-                totalRead += bytesRead;
-            }
-            this.bytesRead.addAndGet(totalRead);
-            filesRead.incrementAndGet();
-            log("Thread " + threadId + ": Read file " + file.getName() + " (" + totalRead + " bytes)");
-        } catch (FileNotFoundException e) {
+        Lock lock = FileIOEngine.MappedFiles.lockShared(file);
+        long start = System.nanoTime();
+        long totalRead;
+        try {
+            totalRead = worker.engine.read(file);
+        } catch (FileNotFoundException | NoSuchFileException e) {
             // File might have been deleted by another thread
+            fileIndex.remove(file);
+            return;
+        } finally {
+            FileIOEngine.MappedFiles.unlock(lock);
+        }
+        worker.readLatency.record(System.nanoTime() - start);
+        worker.stats.reads.increment();
+        worker.stats.bytesRead.add(totalRead);
+        this.bytesRead.add(totalRead);
+        filesRead.increment();
+        if (AsyncLog.sampleOperation()) {
+            logOperation("Thread " + worker.id + ": Read file " + file.getName() + " (" + totalRead + " bytes)");
         }
     }
 
-    private void writeRandomFile(int threadId) throws IOException {
-        File file = getRandomFile();
+    private void writeRandomFile(Worker worker) throws IOException {
+        File file = getRandomFile(worker);
         if (file == null) {
-            createRandomFile(threadId);
+            createRandomFile(worker);
             return;
         }
         
-        int fileSize = config.minFileSize + random.nextInt(config.maxFileSize - config.minFileSize + 1);
-        byte[] data = new byte[fileSize];
-        random.nextBytes(data);
+        int fileSize = config.minFileSize + worker.random.nextInt(config.maxFileSize - config.minFileSize + 1);
+        byte[] data = payloads.region();
+        int offset = payloads.offsetFor(fileSize, worker.random);
         
-        try (FileOutputStream fos = new FileOutputStream(file)) {
-            fos.write(data);
-            bytesWritten.addAndGet(fileSize);
-            filesWritten.incrementAndGet();
-            log("Thread " + threadId + ": Wrote to file " + file.getName() + " (" + fileSize + " bytes)");
-        } catch (FileNotFoundException e) {
+        Lock lock = FileIOEngine.MappedFiles.lockExclusive(file);
+        long start = System.nanoTime();
+        try {
+            worker.engine.write(file, data, offset, fileSize, false);
+        } catch (FileNotFoundException | NoSuchFileException e) {
             // File might have been deleted by another thread
+            fileIndex.remove(file);
+            return;
+        } finally {
+            FileIOEngine.MappedFiles.unlock(lock);
+        }
+        worker.writeLatency.record(System.nanoTime() - start);
+        worker.stats.writes.increment();
+        worker.stats.bytesWritten.add(fileSize);
+        bytesWritten.add(fileSize);
+        filesWritten.increment();
+        if (AsyncLog.sampleOperation()) {
+            logOperation("Thread " + worker.id + ": Wrote to file " + file.getName() + " (" + fileSize + " bytes)");
         }
     }
 
-    private void appendRandomFile(int threadId) throws IOException {
-        File file = getRandomFile();
+    private void appendRandomFile(Worker worker) throws IOException {
+        File file = getRandomFile(worker);
         if (file == null) {
-            createRandomFile(threadId);
+            createRandomFile(worker);
             return;
         }
         
-        int appendSize = random.nextInt(config.maxFileSize / 2) + 1;
-        byte[] data = new byte[appendSize];
-        random.nextBytes(data);
+        int appendSize = worker.random.nextInt(config.maxFileSize / 2) + 1;
+        byte[] data = payloads.region();
+        int offset = payloads.offsetFor(appendSize, worker.random);
         
-        try (FileOutputStream fos = new FileOutputStream(file, true)) {
-            fos.write(data);
-            bytesWritten.addAndGet(appendSize);
-            filesAppended.incrementAndGet();
-            log("Thread " + threadId + ": Appended to file " + file.getName() + " (" + appendSize + " bytes)");
-        } catch (FileNotFoundException e) {
+        Lock lock = FileIOEngine.MappedFiles.lockShared(file);
+        long start = System.nanoTime();
+        try {
+            worker.engine.write(file, data, offset, appendSize, true);
+        } catch (FileNotFoundException | NoSuchFileException e) {
             // File might have been deleted by another thread
+            fileIndex.remove(file);
+            return;
+        } finally {
+            FileIOEngine.MappedFiles.unlock(lock);
+        }
+        worker.appendLatency.record(System.nanoTime() - start);
+        worker.stats.appends.increment();
+        worker.stats.bytesWritten.add(appendSize);
+        bytesWritten.add(appendSize);
+        filesAppended.increment();
+        if (AsyncLog.sampleOperation()) {
+            logOperation("Thread " + worker.id + ": Appended to file " + file.getName() + " (" + appendSize + " bytes)");
         }
     }
 
-    private void renameRandomFile(int threadId) {
-        File file = getRandomFile();
+    private void renameRandomFile(Worker worker) {
+        File file = getRandomFile(worker);
         if (file == null) return;
         
-        String newName = "renamed_" + System.currentTimeMillis() + "_" + threadId + "_" + random.nextInt(10000) + ".dat";
+        String newName = "renamed_" + worker.id + "_" + worker.sequence++ + ".dat";
         File newFile = new File(file.getParent(), newName);
         
-        if (file.renameTo(newFile)) {
-            filesRenamed.incrementAndGet();
-            log("Thread " + threadId + ": Renamed file " + file.getName() + " -> " + newFile.getName());
+        Lock lock = FileIOEngine.MappedFiles.lockExclusive(file);
+        boolean renamed;
+        try {
+            renamed = file.renameTo(newFile);
+        } finally {
+            FileIOEngine.MappedFiles.unlock(lock);
+        }
+        if (renamed) {
+            fileIndex.remove(file);
+            fileIndex.add(newFile);
+            filesRenamed.increment();
+            if (AsyncLog.sampleOperation()) {
+                logOperation("Thread " + worker.id + ": Renamed file " + file.getName() + " -> " + newFile.getName());
+            }
+        } else {
+            pruneIfMissing(fileIndex, file);
         }
     }
 
-    private void deleteRandomFile(int threadId) {
-        File file = getRandomFile();
+    private void deleteRandomFile(Worker worker) {
+        File file = getRandomFile(worker);
         if (file == null) return;
         
         if (file.delete()) {
-            filesDeleted.incrementAndGet();
-            log("Thread " + threadId + ": Deleted file " + file.getName());
+            fileIndex.remove(file);
+            filesDeleted.increment();
+            if (AsyncLog.sampleOperation()) {
+                logOperation("Thread " + worker.id + ": Deleted file " + file.getName());
+            }
+        } else {
+            pruneIfMissing(fileIndex, file);
         }
     }
 
-    private void deleteRandomDirectory(int threadId) {
-        File dir = getRandomDirectory();
-        if (dir == null || dir.equals(testFolder)) return; // Don't delete root test folder
+    private void deleteRandomDirectory(Worker worker) {
+        File dir = dirIndex.random(worker.random);
+        if (dir == null) return; // Root test folder is never indexed, so never deleted
         
         try {
             deleteDirectory(dir);
-            dirsDeleted.incrementAndGet();
-            log("Thread " + threadId + ": Deleted directory " + dir.getName());
+            // Entries below the directory are pruned lazily when a worker trips over them
+            dirIndex.remove(dir);
+            dirsDeleted.increment();
+            if (AsyncLog.sampleOperation()) {
+                logOperation("Thread " + worker.id + ": Deleted directory " + dir.getName());
+            }
+        } catch (NoSuchFileException e) {
+            // Already removed by another thread
+            pruneIfMissing(dirIndex, dir);
         } catch (IOException e) {
-            log("Thread " + threadId + ": Failed to delete directory " + dir.getName() + " - " + e.getMessage());
+            errors.increment();
+            logError("Thread " + worker.id + ": Failed to delete directory " + dir.getName() + " - " + e.getMessage());
         }
     }
 
-    private File getRandomFile() {
-        List<File> files = new ArrayList<>();
-        collectFiles(testFolder, files);
-        
-        if (files.isEmpty()) {
-            return null;
-        }
-        
-        return files.get(random.nextInt(files.size()));
+    private File getRandomFile(Worker worker) {
+        return fileIndex.pick(worker.fileAccess, worker.random);
     }
 
-    private File getRandomDirectory() {
-        List<File> dirs = new ArrayList<>();
-        collectDirectories(testFolder, dirs);
-        
-        if (dirs.isEmpty()) {
-            return null;
+    // Drops an index entry whose file or directory no longer exists on disk
+    private void pruneIfMissing(FileIndex index, File entry) {
+        if (!entry.equals(testFolder) && !entry.exists()) {
+            index.remove(entry);
         }
-        
-        return dirs.get(random.nextInt(dirs.size()));
     }
 
-    private void collectFiles(File dir, List<File> files) {
-        File[] fileArray = dir.listFiles();
-        if (fileArray != null) {
-            for (File f : fileArray) {
-                if (f.isFile()) {
-                    files.add(f);
-                } else if (f.isDirectory()) {
-                    collectFiles(f, files);
+    // Full scan of the test folder; only needed when starting on a non-empty folder
+    private void rebuildIndex() {
+        fileIndex.clear();
+        dirIndex.clear();
+        try {
+            Files.walkFileTree(testFolder.toPath(), new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    File file = dir.toFile();
+                    if (!file.equals(testFolder)) {
+                        dirIndex.add(file);
+                    }
+                    return FileVisitResult.CONTINUE;
                 }
-            }
-        }
-    }
 
-    private void collectDirectories(File dir, List<File> dirs) {
-        File[] fileArray = dir.listFiles();
-        if (fileArray != null) {
-            for (File f : fileArray) {
-                if (f.isDirectory()) {
-                    dirs.add(f);
-                    collectDirectories(f, dirs);
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    fileIndex.add(file.toFile());
+                    return FileVisitResult.CONTINUE;
                 }
-            }
+            });
+        } catch (IOException e) {
+            AsyncLog.error("Error scanning test folder: " + e.getMessage());
         }
     }
 
@@ -322,6 +526,15 @@ public class FileStressTest {
 
     public void stop() {
         running = false;
+        if (setup != null) {
+            setup.cancel();
+        }
+        if (blockWorkload != null) {
+            blockWorkload.stop();
+        }
+        if (metadataWorkload != null) {
+            metadataWorkload.stop();
+        }
         if (executor != null) {
             executor.shutdown();
             try {
@@ -333,46 +546,200 @@ public class FileStressTest {
                 Thread.currentThread().interrupt();
             }
         }
-        
+        endTime = System.nanoTime();
+
         // Clean up test folder
         cleanup();
     }
 
     private void cleanup() {
         log("Cleaning up test folder...");
-        try {
-            File[] files = testFolder.listFiles();
-            if (files != null) {
-                for (File file : files) {
-                    if (file.isDirectory()) {
-                        deleteDirectory(file);
-                    } else {
-                        file.delete();
-                    }
-                }
-            }
+        teardown = TreeDeleter.deleteContents(testFolder.toPath(), config.setupThreads);
+        if (teardown.getFailures() > 0) {
+            AsyncLog.error("Error cleaning up test folder: " + teardown.getFailures() + " entries could not be deleted");
+        } else {
             log("Test folder cleaned up successfully");
-        } catch (IOException e) {
-            System.err.println("Error cleaning up test folder: " + e.getMessage());
         }
     }
 
     public void printStatistics() {
+        if (metadataWorkload != null) {
+            setup = metadataWorkload.getSetup();
+        }
+        if (setup != null || teardown != null) {
+            System.out.println("Test tree (not included in the results):");
+            if (setup != null) {
+                System.out.println("  Setup: " + setup.describe());
+            }
+            if (teardown != null) {
+                System.out.println("  Cleanup: " + teardown.describe());
+            }
+        }
+        if (blockWorkload != null) {
+            blockWorkload.printStatistics();
+            return;
+        }
+        if (metadataWorkload != null) {
+            metadataWorkload.printStatistics();
+            return;
+        }
         System.out.println("File Stress Test:");
-        System.out.println("  Files created: " + filesCreated.get());
-        System.out.println("  Files read: " + filesRead.get());
-        System.out.println("  Files written: " + filesWritten.get());
-        System.out.println("  Files appended: " + filesAppended.get());
-        System.out.println("  Files renamed: " + filesRenamed.get());
-        System.out.println("  Files deleted: " + filesDeleted.get());
-        System.out.println("  Directories created: " + dirsCreated.get());
-        System.out.println("  Directories deleted: " + dirsDeleted.get());
-        System.out.println("  Total bytes written: " + bytesWritten.get());
-        System.out.println("  Total bytes read: " + bytesRead.get());
+        System.out.println("  Files created: " + filesCreated.sum());
+        System.out.println("  Files read: " + filesRead.sum());
+        System.out.println("  Files written: " + filesWritten.sum());
+        System.out.println("  Files appended: " + filesAppended.sum());
+        System.out.println("  Files renamed: " + filesRenamed.sum());
+        System.out.println("  Files deleted: " + filesDeleted.sum());
+        System.out.println("  Directories created: " + dirsCreated.sum());
+        System.out.println("  Directories deleted: " + dirsDeleted.sum());
+        System.out.println("  Total bytes written: " + bytesWritten.sum());
+        System.out.println("  Total bytes read: " + bytesRead.sum());
+        System.out.println("  Errors: " + errors.sum());
+
+        double seconds = ((endTime != 0 ? endTime : System.nanoTime()) - startTime) / 1_000_000_000.0;
+        for (EngineStats stats : engineStats.values()) {
+            stats.print(seconds);
+        }
+    }
+
+    public void collectCounters(Map<String, Long> counters) {
+        if (blockWorkload != null) {
+            blockWorkload.collectCounters(counters);
+            return;
+        }
+        if (metadataWorkload != null) {
+            metadataWorkload.collectCounters(counters);
+            return;
+        }
+        counters.put("file.create", filesCreated.sum());
+        counters.put("file.read", filesRead.sum());
+        counters.put("file.write", filesWritten.sum());
+        counters.put("file.append", filesAppended.sum());
+        counters.put("file.rename", filesRenamed.sum());
+        counters.put("file.delete", filesDeleted.sum());
+        counters.put("file.mkdir", dirsCreated.sum());
+        counters.put("file.rmdir", dirsDeleted.sum());
+        counters.put("file.bytesWritten", bytesWritten.sum());
+        counters.put("file.bytesRead", bytesRead.sum());
+        long syncs = 0;
+        for (EngineStats stats : engineStats.values()) {
+            syncs += stats.syncs.sum();
+        }
+        counters.put("file.sync", syncs);
+        counters.put("file.errors", errors.sum());
+    }
+
+    public void collectHistograms(Map<String, LatencyHistogram> histograms) {
+        if (blockWorkload != null) {
+            blockWorkload.collectHistograms(histograms);
+            return;
+        }
+        if (metadataWorkload != null) {
+            metadataWorkload.collectHistograms(histograms);
+            return;
+        }
+        for (EngineStats stats : engineStats.values()) {
+            String prefix = "file." + stats.engine + ".";
+            histograms.put(prefix + "create", stats.createLatency.snapshot());
+            histograms.put(prefix + "read", stats.readLatency.snapshot());
+            histograms.put(prefix + "write", stats.writeLatency.snapshot());
+            histograms.put(prefix + "append", stats.appendLatency.snapshot());
+            histograms.put(prefix + "sync", stats.syncLatency.snapshot());
+        }
+    }
+
+    // Per-thread state: the worker's own random stream, I/O engine, durability policy and latency recorders.
+    // Names come from a per-worker sequence so a replayed run creates the same paths.
+    private static final class Worker {
+        final int id;
+        final Random random;
+        final AccessDistribution fileAccess;
+        final FileIOEngine engine;
+        final Durability durability;
+        final EngineStats stats;
+        final LatencyHistogram syncLatency;
+        final LatencyHistogram createLatency;
+        final LatencyHistogram readLatency;
+        final LatencyHistogram writeLatency;
+        final LatencyHistogram appendLatency;
+        final RateSchedule schedule;
+        volatile boolean running = true;
+        long sequence;
+
+        Worker(int id, String engineName, Config.FileTestConfig config, EngineStats stats, Random random,
+               TargetRate targetRate) {
+            this.id = id;
+            this.random = random;
+            this.schedule = RateSchedule.forThread(targetRate, "uniform", random);
+            this.fileAccess = AccessDistribution.create(config.fileAccess);
+            this.syncLatency = stats.syncLatency.newRecorder();
+            this.durability = new Durability(config, syncLatency, stats.syncs);
+            this.engine = FileIOEngine.create(engineName, config, durability);
+            this.stats = stats;
+            this.createLatency = stats.createLatency.newRecorder();
+            this.readLatency = stats.readLatency.newRecorder();
+            this.writeLatency = stats.writeLatency.newRecorder();
+            this.appendLatency = stats.appendLatency.newRecorder();
+        }
+
+        void retire() {
+            stats.syncLatency.retire(syncLatency);
+            stats.createLatency.retire(createLatency);
+            stats.readLatency.retire(readLatency);
+            stats.writeLatency.retire(writeLatency);
+            stats.appendLatency.retire(appendLatency);
+        }
+    }
+
+    // Data-path results for all workers sharing one I/O engine
+    private static final class EngineStats {
+        final String engine;
+        final LongAdder creates = new LongAdder();
+        final LongAdder reads = new LongAdder();
+        final LongAdder writes = new LongAdder();
+        final LongAdder appends = new LongAdder();
+        final LongAdder bytesWritten = new LongAdder();
+        final LongAdder bytesRead = new LongAdder();
+        final LongAdder syncs = new LongAdder();
+        final LatencyTracker createLatency = new LatencyTracker("Create");
+        final LatencyTracker readLatency = new LatencyTracker("Read");
+        final LatencyTracker writeLatency = new LatencyTracker("Write");
+        final LatencyTracker appendLatency = new LatencyTracker("Append");
+        // Time in force()/msync only; write latencies above include it when it runs inline
+        final LatencyTracker syncLatency = new LatencyTracker("Sync");
+
+        EngineStats(String engine) {
+            this.engine = engine;
+        }
+
+        void print(double seconds) {
+            System.out.println("File I/O engine: " + engine);
+            System.out.printf("  Ops: create %d, read %d, write %d, append %d%n",
+                creates.sum(), reads.sum(), writes.sum(), appends.sum());
+            System.out.printf("  Throughput: write %.2f MB/s, read %.2f MB/s%n",
+                bytesWritten.sum() / seconds / (1024 * 1024), bytesRead.sum() / seconds / (1024 * 1024));
+            createLatency.printSummary();
+            readLatency.printSummary();
+            writeLatency.printSummary();
+            appendLatency.printSummary();
+            if (syncs.sum() > 0) {
+                System.out.println("  Syncs: " + syncs.sum());
+                syncLatency.printSummary();
+            }
+        }
     }
 
     private void log(String message) {
-        System.out.println("[FILE TEST] " + message);
+        AsyncLog.info("[FILE TEST] " + message);
+    }
+
+    // Per-operation events; callers check AsyncLog.sampleOperation() before building the message
+    private void logOperation(String message) {
+        AsyncLog.debug("[FILE TEST] " + message);
+    }
+
+    private void logError(String message) {
+        AsyncLog.warn("[FILE TEST] " + message);
     }
 }
 
@@ -0,0 +1,129 @@
+package com.stresstest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Prints per-second deltas of all counters at a fixed interval while the test runs.
+ * Counters are grouped by the part of their name before the last '.', one line per group.
+ * With an exporter attached the same rates also go to the results time series. With a
+ * resource sampler attached each report also samples the generator's own resource use,
+ * so both series share the same timestamps.
+ */
+public class IntervalReporter {
+    private final Supplier<Map<String, Long>> counterSource;
+    private final int intervalSeconds;
+    private final boolean print;
+    private final ResultExporter exporter;
+    private final ResourceSampler resources;
+    private final ScheduledExecutorService scheduler;
+    private Map<String, Long> previous;
+    private long previousTime;
+    private long startTime;
+
+    public IntervalReporter(Supplier<Map<String, Long>> counterSource, int intervalSeconds) {
+        this(counterSource, intervalSeconds, true, null, null);
+    }
+
+    public IntervalReporter(Supplier<Map<String, Long>> counterSource, int intervalSeconds,
+                            boolean print, ResultExporter exporter, ResourceSampler resources) {
+        this.counterSource = counterSource;
+        this.intervalSeconds = intervalSeconds;
+        this.print = print;
+        this.exporter = exporter;
+        this.resources = resources;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "interval-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        startTime = System.nanoTime();
+        previousTime = startTime;
+        previous = counterSource.get();
+        if (resources != null) {
+            resources.start();
+        }
+        scheduler.scheduleAtFixedRate(this::report, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private void report() {
+        try {
+            long now = System.nanoTime();
+            Map<String, Long> current = counterSource.get();
+            double seconds = (now - previousTime) / 1_000_000_000.0;
+
+            Map<String, StringBuilder> lines = new LinkedHashMap<>();
+            Map<String, Double> rates = new LinkedHashMap<>();
+            for (Map.Entry<String, Long> entry : current.entrySet()) {
+                String key = entry.getKey();
+                Long before = previous.get(key);
+                double rate = (entry.getValue() - (before != null ? before : 0)) / seconds;
+                rates.put(key, rate);
+
+                int split = key.lastIndexOf('.');
+                String group = key.substring(0, split);
+                String name = key.substring(split + 1);
+                StringBuilder line = lines.computeIfAbsent(group, g -> new StringBuilder());
+                if (line.length() > 0) {
+                    line.append(", ");
+                }
+                if (name.startsWith("bytes") || name.endsWith("bytes")) {
+                    line.append(String.format("%s %.2f MB/s", name, rate / (1024 * 1024)));
+                } else {
+                    line.append(String.format("%s %.0f/s", name, rate));
+                }
+            }
+
+            long elapsed = TimeUnit.NANOSECONDS.toSeconds(now - startTime);
+            if (print) {
+                for (Map.Entry<String, StringBuilder> line : lines.entrySet()) {
+                    System.out.printf("[%5ds] %s: %s%n", elapsed, line.getKey(), line.getValue());
+                }
+            }
+            if (exporter != null) {
+                exporter.writeInterval(elapsed, rates);
+            }
+            if (resources != null) {
+                reportResources(elapsed);
+            }
+
+            previous = current;
+            previousTime = now;
+        } catch (RuntimeException e) {
+            // Never let a reporting glitch cancel the schedule
+            System.err.println("Interval report failed: " + e.getMessage());
+        }
+    }
+
+    // Saturation warnings are printed even when the interval lines are not
+    private void reportResources(long elapsed) {
+        ResourceSampler.Sample sample = resources.sample();
+        if (print) {
+            for (Map.Entry<String, String> line : sample.lines().entrySet()) {
+                System.out.printf("[%5ds] %s: %s%n", elapsed, line.getKey(), line.getValue());
+            }
+        }
+        if (sample.saturationChanged) {
+            if (sample.warnings.isEmpty()) {
+                System.out.printf("[%5ds] Load generator no longer saturated%n", elapsed);
+            } else {
+                System.out.printf("[%5ds] WARNING: load generator saturated (%s); throughput is limited by the generator, not the target%n",
+                    elapsed, String.join(", ", sample.warnings));
+            }
+        }
+        if (exporter != null) {
+            exporter.writeResources(elapsed, sample.values);
+        }
+    }
+}
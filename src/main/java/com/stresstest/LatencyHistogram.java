@@ -0,0 +1,157 @@
+package com.stresstest;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size log-linear histogram of nanosecond latencies. Values below 2^7 are
+ * counted exactly; above that every power-of-two range is split into 64 linear
+ * sub-buckets, which bounds the relative error to about 1.6%.
+ *
+ * A histogram has a single writer: recording does no allocation, locking or CAS.
+ * Readers merge histograms into a fresh one when they need a report.
+ */
+public class LatencyHistogram {
+    private static final int LINEAR_BITS = 7;
+    private static final int SUB_BUCKET_BITS = LINEAR_BITS - 1;
+    private static final int LINEAR_COUNT = 1 << LINEAR_BITS;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40; // 2^41 ns, about 36 minutes
+    private static final long MAX_TRACKABLE = (1L << (MAX_EXPONENT + 1)) - 1;
+    static final int BUCKET_COUNT = LINEAR_COUNT + (MAX_EXPONENT - LINEAR_BITS + 1) * SUB_BUCKET_COUNT;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long totalCount;
+    private long totalNanos;
+    private long max;
+
+    public void record(long nanos) {
+        nanos = clamp(nanos);
+        counts[indexOf(nanos)]++;
+        totalCount++;
+        totalNanos += nanos;
+        if (nanos > max) {
+            max = nanos;
+        }
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        totalNanos += other.totalNanos;
+        if (other.max > max) {
+            max = other.max;
+        }
+    }
+
+    // Adds buckets recorded concurrently by other threads (LatencyTracker stripes). The
+    // count is summed from the buckets read, so percentiles agree with them mid-update.
+    void add(AtomicLongArray otherCounts, long otherTotalNanos, long otherMax) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = otherCounts.get(i);
+            counts[i] += count;
+            totalCount += count;
+        }
+        totalNanos += otherTotalNanos;
+        if (otherMax > max) {
+            max = otherMax;
+        }
+    }
+
+    /**
+     * Returns what was recorded after the given earlier snapshot of the same source.
+     * The exact maximum of the interval is unknown, so it is taken from the highest
+     * non-empty bucket.
+     */
+    public LatencyHistogram since(LatencyHistogram earlier) {
+        LatencyHistogram delta = new LatencyHistogram();
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = counts[i] - earlier.counts[i];
+            if (count > 0) {
+                delta.counts[i] = count;
+                delta.max = Math.min(highestValueAt(i), max);
+            }
+        }
+        delta.totalCount = totalCount - earlier.totalCount;
+        delta.totalNanos = totalNanos - earlier.totalNanos;
+        return delta;
+    }
+
+    public long getCount() {
+        return totalCount;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0 : totalNanos / (double) totalCount;
+    }
+
+    /**
+     * Returns the upper bound of the bucket holding the given percentile (0-100),
+     * capped at the exact maximum.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(totalCount * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(highestValueAt(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Cumulative counts at or below each bound (ascending, in nanoseconds), resolved to
+     * whole buckets, for exporting as fixed histogram buckets.
+     */
+    public long[] cumulativeCounts(long[] bounds) {
+        long[] result = new long[bounds.length];
+        long seen = 0;
+        int bucket = 0;
+        for (int b = 0; b < bounds.length; b++) {
+            int last = indexOf(Math.min(Math.max(bounds[b], 0), MAX_TRACKABLE));
+            while (bucket <= last) {
+                seen += counts[bucket++];
+            }
+            result[b] = seen;
+        }
+        return result;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    static long clamp(long nanos) {
+        return nanos < 0 ? 0 : Math.min(nanos, MAX_TRACKABLE);
+    }
+
+    static int indexOf(long value) {
+        if (value < LINEAR_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKET_COUNT;
+        return LINEAR_COUNT + (exponent - LINEAR_BITS) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long highestValueAt(int index) {
+        if (index < LINEAR_COUNT) {
+            return index;
+        }
+        int relative = index - LINEAR_COUNT;
+        int exponent = LINEAR_BITS + relative / SUB_BUCKET_COUNT;
+        int shift = exponent - SUB_BUCKET_BITS;
+        long lowest = (long) (SUB_BUCKET_COUNT + relative % SUB_BUCKET_COUNT) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,134 @@
+package com.stresstest;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Named latency metric. Workers get their own histogram from {@link #newRecorder()}
+ * and record into it without any coordination; when a worker's thread ends it hands
+ * the histogram back with {@link #retire}, which folds it into one retired total, so
+ * workers the load scheduler adds and removes do not pile up. Clients,
+ * which can number in the hundreds of thousands and come and go with the load
+ * level, call {@link #record(long)} instead: it goes to one of a fixed set of
+ * stripes chosen by thread id, so memory and merge cost stay bounded. Stripes are
+ * updated with atomic increments only, so neither recording nor a report ever takes
+ * a lock (and virtual threads never pin their carrier). Reports merge the per-worker
+ * histograms and the stripes.
+ */
+public class LatencyTracker {
+    private static final int STRIPES = stripeCount();
+
+    private final String name;
+    private final List<LatencyHistogram> recorders = new CopyOnWriteArrayList<>();
+    private final LatencyHistogram retired = new LatencyHistogram(); // guarded by this
+    private volatile Stripe[] stripes;
+
+    public LatencyTracker(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LatencyHistogram newRecorder() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        recorders.add(histogram);
+        return histogram;
+    }
+
+    /**
+     * Folds the histogram of a worker that will not record any more into the retired
+     * total. Call it from the worker's own thread after its last sample.
+     */
+    public synchronized void retire(LatencyHistogram recorder) {
+        if (recorders.remove(recorder)) {
+            retired.add(recorder);
+        }
+    }
+
+    public void record(long nanos) {
+        Stripe[] current = stripes;
+        if (current == null) {
+            current = createStripes();
+        }
+        current[stripeOf(Thread.currentThread().getId())].record(nanos);
+    }
+
+    public LatencyHistogram snapshot() {
+        LatencyHistogram merged = new LatencyHistogram();
+        // Excludes only retire(), so a histogram is never counted twice or missed while it moves
+        synchronized (this) {
+            merged.add(retired);
+            for (LatencyHistogram recorder : recorders) {
+                merged.add(recorder);
+            }
+        }
+        Stripe[] current = stripes;
+        if (current != null) {
+            for (Stripe stripe : current) {
+                merged.add(stripe.counts, stripe.totalNanos.sum(), stripe.max.get());
+            }
+        }
+        return merged;
+    }
+
+    private synchronized Stripe[] createStripes() {
+        if (stripes == null) {
+            Stripe[] created = new Stripe[STRIPES];
+            for (int i = 0; i < created.length; i++) {
+                created[i] = new Stripe();
+            }
+            stripes = created;
+        }
+        return stripes;
+    }
+
+    private static int stripeOf(long threadId) {
+        long mixed = threadId * 0x9E3779B97F4A7C15L;
+        return (int) (mixed >>> 32) & (STRIPES - 1);
+    }
+
+    private static int stripeCount() {
+        int wanted = Math.max(4, Runtime.getRuntime().availableProcessors() * 4);
+        return Math.min(256, Integer.highestOneBit(wanted - 1) << 1);
+    }
+
+    // Histogram buckets shared by the threads hashed to it
+    private static final class Stripe {
+        final AtomicLongArray counts = new AtomicLongArray(LatencyHistogram.BUCKET_COUNT);
+        final LongAdder totalNanos = new LongAdder();
+        final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+        void record(long nanos) {
+            nanos = LatencyHistogram.clamp(nanos);
+            counts.incrementAndGet(LatencyHistogram.indexOf(nanos));
+            totalNanos.add(nanos);
+            max.accumulate(nanos);
+        }
+    }
+
+    public void printSummary() {
+        printSummary(name, snapshot());
+    }
+
+    public static void printSummary(String label, LatencyHistogram histogram) {
+        if (histogram.getCount() == 0) {
+            return;
+        }
+        System.out.printf("  %s (ms): count=%d mean=%.3f p50=%.3f p90=%.3f p99=%.3f p99.9=%.3f max=%.3f%n",
+            label, histogram.getCount(), histogram.getMean() / 1_000_000.0,
+            toMillis(histogram.getValueAtPercentile(50)),
+            toMillis(histogram.getValueAtPercentile(90)),
+            toMillis(histogram.getValueAtPercentile(99)),
+            toMillis(histogram.getValueAtPercentile(99.9)),
+            toMillis(histogram.getMax()));
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
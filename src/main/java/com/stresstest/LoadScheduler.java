@@ -0,0 +1,337 @@
+package com.stresstest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Drives the load level of a running test through the stages of the load config:
+ * an optional warm-up, then either the configured step/ramp stages or a capacity
+ * search that raises the level until p99 latency or the error rate exceeds its limit.
+ * A level is a worker count under concurrency control and an aggregate operations per
+ * second under rate control. Each stage is measured on its own counter and histogram
+ * deltas; the knee reported per workload is the best throughput of a passing stage.
+ * Stages apply one level to every workload. The search gives each workload its own
+ * level and stops raising it once that workload is over its limits, holding it at
+ * its last passing level while the others go on; it ends when every workload is held.
+ */
+public class LoadScheduler {
+    private final Config.LoadConfig config;
+    private final StressTest test;
+    private final boolean rateControl;
+    private final Thread thread;
+    private final List<Workload> workloads = new ArrayList<>();
+
+    public LoadScheduler(Config.LoadConfig config, StressTest test) {
+        this.config = config;
+        this.test = test;
+        this.rateControl = "rate".equalsIgnoreCase(config.control);
+        this.thread = new Thread(this::run, "load-scheduler");
+        thread.setDaemon(true);
+
+        workloads.add(new Workload("tcp", "tcp.client.requests", "tcp.client.errors", "tcp.client.request"));
+        workloads.add(new Workload("udp", "udp.client.echoes", "udp.client.errors", "udp.client.rtt"));
+        workloads.add(new Workload("file", null, null, null));
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public void stop() {
+        thread.interrupt();
+    }
+
+    /**
+     * Rejects a load config the scheduler cannot run, before the test starts anything.
+     */
+    public static void validate(Config.LoadConfig config) {
+        String mode = config.mode != null ? config.mode.toLowerCase() : "";
+        if (!"fixed".equals(mode) && !"stages".equals(mode) && !"search".equals(mode)) {
+            throw new IllegalArgumentException("Unknown load mode: " + config.mode + " (fixed, stages or search)");
+        }
+        if ("search".equals(mode)) {
+            if (config.searchStartLevel <= 0) {
+                throw new IllegalArgumentException("load.searchStartLevel must be greater than 0");
+            }
+            if (config.searchFactor <= 1 && config.searchIncrement <= 0) {
+                throw new IllegalArgumentException(
+                    "load.searchIncrement must be greater than 0 unless load.searchFactor is greater than 1");
+            }
+        }
+    }
+
+    private void run() {
+        try {
+            String mode = config.mode.toLowerCase();
+            double firstLevel = "search".equals(mode) ? config.searchStartLevel
+                : config.stages.length > 0 ? startLevel(config.stages[0]) : 1;
+
+            if (config.warmupSeconds > 0) {
+                double level = config.warmupLevel > 0 ? config.warmupLevel : firstLevel;
+                System.out.println("[load] Warm-up for " + config.warmupSeconds + "s at " + describe(level));
+                apply(level);
+                Thread.sleep(config.warmupSeconds * 1000L);
+            }
+
+            if ("stages".equals(mode)) {
+                for (int i = 0; i < config.stages.length; i++) {
+                    Config.StageConfig stage = config.stages[i];
+                    runStage(i + 1, startLevel(stage), stage.level, stage.durationSeconds);
+                }
+            } else {
+                search();
+            }
+            printKnees();
+        } catch (InterruptedException e) {
+            // Test stopped before the schedule finished
+            return;
+        } catch (RuntimeException e) {
+            System.err.println("Load schedule failed: " + e.getMessage());
+        }
+        test.loadScheduleFinished();
+    }
+
+    private static double startLevel(Config.StageConfig stage) {
+        return "ramp".equalsIgnoreCase(stage.type) ? stage.from : stage.level;
+    }
+
+    // Runs one stage of the stages mode, where every workload follows the same level
+    private void runStage(int number, double from, double to, int seconds) throws InterruptedException {
+        Map<String, Long> counters = test.collectCounters();
+        Map<String, LatencyHistogram> histograms = test.collectHistograms();
+        long start = System.nanoTime();
+
+        apply(from);
+        // Re-applied every second, which also replaces clients that finished their iterations
+        for (int s = 1; s <= seconds; s++) {
+            Thread.sleep(1000);
+            if (s < seconds) {
+                apply(from + (to - from) * s / seconds);
+            }
+        }
+        apply(to);
+
+        for (Workload workload : workloads) {
+            workload.level = to;
+        }
+        String line = measure(counters, histograms, start);
+        String level = from != to ? describe(from) + " -> " + describe(to) : describe(to);
+        System.out.println("[load] Stage " + number + " (" + level + ", " + seconds + "s): " + line);
+    }
+
+    // Raises each workload's own level until that workload goes over its limits; a failed
+    // workload is held at its last passing level while the others keep rising, so every
+    // knee is the workload's own and not the point where another workload broke
+    private void search() throws InterruptedException {
+        for (Workload workload : workloads) {
+            workload.level = config.searchStartLevel;
+        }
+        for (int stage = 1; isSearching(); stage++) {
+            Map<String, Long> counters = test.collectCounters();
+            Map<String, LatencyHistogram> histograms = test.collectHistograms();
+            long start = System.nanoTime();
+            for (int s = 0; s < config.stageSeconds; s++) {
+                applyEach(); // every second, which also replaces clients that finished their iterations
+                Thread.sleep(1000);
+            }
+
+            String levels = describeLevels();
+            String line = measure(counters, histograms, start);
+            System.out.println("[load] Stage " + stage + " (" + levels + ", " + config.stageSeconds + "s): " + line);
+
+            for (Workload workload : workloads) {
+                if (workload.held) {
+                    continue;
+                }
+                if (!workload.measured) {
+                    workload.held = true; // not enabled in this test
+                } else if (workload.violated) {
+                    workload.held = true;
+                    if (workload.kneeLevel >= 0) {
+                        workload.level = workload.kneeLevel;
+                    }
+                } else {
+                    double next = nextLevel(workload.level);
+                    if (next > config.searchMaxLevel) {
+                        workload.held = true;
+                    } else {
+                        workload.level = next;
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isSearching() {
+        for (Workload workload : workloads) {
+            if (!workload.held) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private double nextLevel(double level) {
+        double next = config.searchFactor > 1 ? level * config.searchFactor : level + config.searchIncrement;
+        if (!rateControl && Math.round(next) == Math.round(level)) {
+            next = Math.round(level) + 1; // worker counts must actually grow
+        }
+        return next;
+    }
+
+    // Measures every workload over the stage that started at the given snapshots and
+    // records the knee of those still rising; returns the stage line
+    private String measure(Map<String, Long> counters, Map<String, LatencyHistogram> histograms, long start) {
+        double elapsed = (System.nanoTime() - start) / 1_000_000_000.0;
+        Map<String, Long> countersAfter = test.collectCounters();
+        Map<String, LatencyHistogram> histogramsAfter = test.collectHistograms();
+
+        StringBuilder line = new StringBuilder();
+        for (Workload workload : workloads) {
+            long ops = workload.ops(countersAfter) - workload.ops(counters);
+            long errors = workload.errors(countersAfter) - workload.errors(counters);
+            workload.measured = ops + errors > 0;
+            workload.violated = false;
+            if (!workload.measured) {
+                continue;
+            }
+            LatencyHistogram latency = workload.latency(histogramsAfter, histograms);
+            double throughput = ops / elapsed;
+            double p99Millis = latency.getValueAtPercentile(99.0) / 1_000_000.0;
+            double errorRate = (double) errors / (ops + errors);
+            workload.violated = p99Millis > config.maxP99Millis || errorRate > config.maxErrorRate;
+            if (!workload.violated && !workload.held && throughput > workload.kneeThroughput) {
+                workload.kneeThroughput = throughput;
+                workload.kneeLevel = workload.level;
+                workload.kneeP99Millis = p99Millis;
+            }
+
+            if (line.length() > 0) {
+                line.append("; ");
+            }
+            line.append(String.format("%s %.0f ops/s p99 %.2f ms err %.2f%%%s%s",
+                workload.name, throughput, p99Millis, errorRate * 100,
+                workload.violated ? " OVER" : "", workload.held ? " (held)" : ""));
+        }
+        return line.length() > 0 ? line.toString() : "no operations";
+    }
+
+    private void applyEach() {
+        for (Workload workload : workloads) {
+            if (rateControl) {
+                test.setTargetRate(workload.name, workload.level);
+            } else {
+                test.setConcurrency(workload.name, (int) Math.max(1, Math.round(workload.level)));
+            }
+        }
+    }
+
+    // One level for all workloads when they agree, otherwise each workload's own
+    private String describeLevels() {
+        StringBuilder levels = new StringBuilder();
+        boolean same = true;
+        for (Workload workload : workloads) {
+            same &= workload.level == workloads.get(0).level;
+        }
+        if (same) {
+            return describe(workloads.get(0).level);
+        }
+        for (Workload workload : workloads) {
+            if (workload.held && !workload.measured) {
+                continue;
+            }
+            if (levels.length() > 0) {
+                levels.append(", ");
+            }
+            levels.append(workload.name).append(' ').append(describe(workload.level));
+        }
+        return levels.toString();
+    }
+
+    private void apply(double level) {
+        if (rateControl) {
+            test.setTargetRate(level);
+        } else {
+            test.setConcurrency((int) Math.max(1, Math.round(level)));
+        }
+    }
+
+    private String describe(double level) {
+        return rateControl ? String.format("%.0f ops/s", level) : Math.max(1, Math.round(level)) + " workers";
+    }
+
+    private void printKnees() {
+        System.out.println("[load] Capacity (limits: p99 <= " + config.maxP99Millis + " ms, errors <= "
+            + String.format("%.2f%%", config.maxErrorRate * 100) + "):");
+        for (Workload workload : workloads) {
+            if (workload.kneeLevel < 0) {
+                continue;
+            }
+            System.out.printf("[load]   %s: %.0f ops/s at %s (p99 %.2f ms)%n", workload.name,
+                workload.kneeThroughput, describe(workload.kneeLevel), workload.kneeP99Millis);
+        }
+    }
+
+    // One measured workload. A null key selects the file workload, whose operations and
+    // histograms are spread over per-operation and per-engine keys under "file."
+    private static final class Workload {
+        final String name;
+        final String opsKey;
+        final String errorsKey;
+        final String histogramKey;
+        double level;
+        boolean held;      // search: no longer raised (over its limits, not running, or at searchMaxLevel)
+        boolean measured;  // last stage had operations
+        boolean violated;  // last stage was over the limits
+        double kneeThroughput;
+        double kneeLevel = -1;
+        double kneeP99Millis;
+
+        Workload(String name, String opsKey, String errorsKey, String histogramKey) {
+            this.name = name;
+            this.opsKey = opsKey;
+            this.errorsKey = errorsKey;
+            this.histogramKey = histogramKey;
+        }
+
+        long ops(Map<String, Long> counters) {
+            if (opsKey != null) {
+                return counters.getOrDefault(opsKey, 0L);
+            }
+            long sum = 0;
+            for (Map.Entry<String, Long> entry : counters.entrySet()) {
+                String key = entry.getKey();
+                String op = key.substring(key.lastIndexOf('.') + 1);
+                if (key.startsWith("file.") && !op.startsWith("bytes") && !op.equals("errors") && !op.equals("sync")
+                        && !op.equals("entries")) {
+                    sum += entry.getValue();
+                }
+            }
+            return sum;
+        }
+
+        long errors(Map<String, Long> counters) {
+            if (errorsKey != null) {
+                return counters.getOrDefault(errorsKey, 0L);
+            }
+            return counters.getOrDefault("file.errors", 0L) + counters.getOrDefault("file.block.errors", 0L)
+                + counters.getOrDefault("file.meta.errors", 0L);
+        }
+
+        // Merged latency of the stage: every matching histogram minus its value at stage start
+        LatencyHistogram latency(Map<String, LatencyHistogram> after, Map<String, LatencyHistogram> before) {
+            LatencyHistogram merged = new LatencyHistogram();
+            for (Map.Entry<String, LatencyHistogram> entry : after.entrySet()) {
+                String key = entry.getKey();
+                boolean match = histogramKey != null ? key.equals(histogramKey)
+                    : key.startsWith("file.") && !key.endsWith(".sync");
+                if (match) {
+                    LatencyHistogram earlier = before.get(key);
+                    merged.add(earlier != null ? entry.getValue().since(earlier) : entry.getValue());
+                }
+            }
+            return merged;
+        }
+    }
+}
@@ -1,11 +1,28 @@
 package com.stresstest;
 
+import java.io.File;
 import java.io.IOException;
+import java.net.InetAddress;
 
 public class Main {
     public static void main(String[] args) {
         String configPath = "config.json";
         String peerIP = null;
+
+        // Agent mode: java -jar mystress.jar --agent [port] [--bind address] [--root dir] [--token secret]
+        if (args.length > 0 && args[0].equals("--agent")) {
+            runAgent(args);
+            return;
+        }
+
+        // Compare mode: java -jar mystress.jar --compare baseline.json candidate.json [tolerance]
+        if (args.length > 0 && args[0].equals("--compare")) {
+            if (args.length < 3) {
+                System.err.println("Usage: java -jar mystress.jar --compare baseline.json candidate.json [tolerance]");
+                System.exit(2);
+            }
+            System.exit(runCompare(args[1], args[2], args.length > 3 ? Double.parseDouble(args[3]) : 0.10));
+        }
         
         // Parse command line arguments
         // Format: java -jar mystress.jar [config.json] [peerIP]
@@ -33,6 +50,11 @@ public class Main {
                 System.out.println("Peer IP override: " + peerIP);
             }
             
+            if (config.run.agents != null && config.run.agents.length > 0) {
+                runController(config);
+                return;
+            }
+
             StressTest stressTest = new StressTest(config);
             
             // Add shutdown hook for graceful shutdown
@@ -42,16 +64,88 @@ public class Main {
             
             stressTest.start();
             
-            // Keep main thread alive
-            Thread.currentThread().join();
+            // Run until interrupted, or until the load schedule (if any) has finished;
+            // the shutdown hook stops the test and prints the results
+            stressTest.awaitFinished();
+            System.exit(0);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid config: " + e.getMessage());
+            System.exit(1);
         } catch (IOException e) {
             System.err.println("Error loading config file: " + e.getMessage());
             System.err.println("Usage: java -jar mystress.jar [config.json] [peerIP]");
             System.err.println("   or: java -jar mystress.jar [peerIP]");
+            System.err.println("   or: java -jar mystress.jar --agent [port] [--bind address] [--root dir] [--token secret]");
+            System.err.println("   or: java -jar mystress.jar --compare baseline.json candidate.json [tolerance]");
             System.exit(1);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
     }
+
+    private static void runController(Config config) throws InterruptedException {
+        Controller controller = new Controller(config);
+        try {
+            controller.start();
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error contacting agents: " + e.getMessage());
+            controller.stop();
+            System.exit(1);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(controller::stop));
+        // Agents time the run themselves (duration or load schedule); stop once all are done
+        controller.awaitFinished();
+        System.exit(0);
+    }
+
+    // Exit code: 0 = no regression, 1 = regression beyond tolerance, 2 = unreadable input
+    private static int runCompare(String baselinePath, String candidatePath, double tolerance) {
+        try {
+            RunSummary baseline = RunSummary.load(baselinePath);
+            RunSummary candidate = RunSummary.load(candidatePath);
+            System.out.printf("Comparing %s (baseline) with %s, tolerance %.1f%%%n",
+                baselinePath, candidatePath, tolerance * 100);
+            int regressions = RunSummary.compare(baseline, candidate, tolerance);
+            System.out.println(regressions == 0 ? "No regressions." : regressions + " regression(s).");
+            return regressions == 0 ? 0 : 1;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Cannot compare results: " + e.getMessage());
+            return 2;
+        }
+    }
+
+    // Defaults: port 7700 on loopback, the working directory as root, token from MYSTRESS_AGENT_TOKEN
+    private static void runAgent(String[] args) {
+        int port = Agent.DEFAULT_PORT;
+        String bind = "127.0.0.1";
+        String root = ".";
+        String token = System.getenv(Agent.TOKEN_ENV);
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--bind") && i + 1 < args.length) {
+                bind = args[++i];
+            } else if (args[i].equals("--root") && i + 1 < args.length) {
+                root = args[++i];
+            } else if (args[i].equals("--token") && i + 1 < args.length) {
+                token = args[++i];
+            } else {
+                port = Integer.parseInt(args[i]);
+            }
+        }
+        Agent agent;
+        try {
+            agent = new Agent(InetAddress.getByName(bind), port, token, new File(root));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Cannot start agent: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(agent::stopCurrent));
+        try {
+            agent.run();
+        } catch (IOException e) {
+            System.err.println("Agent failed on " + bind + ":" + port + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
 }
 
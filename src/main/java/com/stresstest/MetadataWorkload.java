@@ -0,0 +1,347 @@
+package com.stresstest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metadata storm workload: a directory tree of metaFanout^metaDepth leaf directories
+ * filled with empty or tiny files, hit with creates, stats, open/close, renames within
+ * and across directories, deletes and full directory listings. Listings stream through
+ * Files.newDirectoryStream, so a directory of millions of entries is never held in memory.
+ */
+public class MetadataWorkload {
+    private static final String[] OPERATIONS = {"create", "stat", "open", "rename", "move", "delete", "list"};
+    private static final int CREATE = 0;
+    private static final int STAT = 1;
+    private static final int OPEN = 2;
+    private static final int RENAME = 3;
+    private static final int MOVE = 4;
+    private static final int DELETE = 5;
+    private static final int LIST = 6;
+
+    private final Config.FileTestConfig config;
+    private final PayloadPool payloads;
+    private final long seed;
+    private final File root;
+    private final ExecutorService executor;
+    private final TargetRate targetRate;
+    private final double[] cumulativeMix = new double[OPERATIONS.length];
+    private final LongAdder[] completed = new LongAdder[OPERATIONS.length];
+    private final LatencyTracker[] latency = new LatencyTracker[OPERATIONS.length];
+    private final LongAdder entriesListed = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final FileIndex fileIndex;
+    private final List<MetadataWorker> workers = new ArrayList<>();
+    private volatile long startTime;
+    private volatile long endTime;
+    private File[] leaves;
+    private final TreePopulator setup = new TreePopulator();
+    private int workerSequence;
+    private volatile boolean running = false;
+
+    public MetadataWorkload(Config.FileTestConfig config, PayloadPool payloads, long seed, File testFolder,
+                            TargetRate targetRate) {
+        this.config = config;
+        this.payloads = payloads;
+        this.seed = seed;
+        this.root = new File(testFolder, "meta");
+        this.targetRate = targetRate;
+        this.executor = WorkerThreads.newExecutor("metadata-worker");
+        boolean latest = config.fileAccess != null && "latest".equalsIgnoreCase(config.fileAccess.distribution);
+        this.fileIndex = new FileIndex(64, latest ? 4096 : 0);
+        String[] labels = {"Create", "Stat", "Open/close", "Rename", "Move", "Delete", "List"};
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            completed[i] = new LongAdder();
+            latency[i] = new LatencyTracker(labels[i]);
+        }
+        Config.MetadataMixConfig mix = config.metaMix != null ? config.metaMix : new Config.MetadataMixConfig();
+        double[] weights = {mix.create, mix.stat, mix.open, mix.rename, mix.move, mix.delete, mix.list};
+        double total = 0;
+        for (double weight : weights) {
+            total += Math.max(0, weight);
+        }
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += total > 0 ? Math.max(0, weights[i]) / total : 1.0 / weights.length;
+            cumulativeMix[i] = sum;
+        }
+    }
+
+    public void start() throws IOException {
+        int fanout = Math.max(1, config.metaFanout);
+        int depth = Math.max(0, config.metaDepth);
+        System.out.println("Starting metadata workload...");
+        System.out.println("  Tree: fanout " + fanout + ", depth " + depth + ", "
+            + config.metaFilesPerDir + " files per leaf directory, " + config.metaFileSize + " bytes per file");
+
+        List<File> leafList = new ArrayList<>();
+        buildTree(root, fanout, depth, leafList);
+        leaves = leafList.toArray(new File[0]);
+        populate();
+        System.out.println("  Prepared " + leaves.length + " leaf directories, " + setup.describe());
+        if (setup.isCancelled()) {
+            return; // stopped while populating
+        }
+
+        startTime = System.nanoTime();
+        running = true;
+        setConcurrency(config.threadCount);
+        System.out.println();
+    }
+
+    private void buildTree(File dir, int fanout, int depth, List<File> leafList) throws IOException {
+        Files.createDirectories(dir.toPath());
+        if (depth == 0) {
+            leafList.add(dir);
+            return;
+        }
+        for (int i = 0; i < fanout; i++) {
+            buildTree(new File(dir, "d" + i), fanout, depth - 1, leafList);
+        }
+    }
+
+    // Fills every leaf with metaFilesPerDir files in parallel; files left from an earlier run are indexed too
+    private void populate() throws IOException {
+        for (File leaf : leaves) {
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(leaf.toPath())) {
+                for (Path entry : entries) {
+                    fileIndex.add(entry.toFile());
+                }
+            }
+        }
+        setup.createFiles(Arrays.asList(leaves), (long) leaves.length * config.metaFilesPerDir, "p_",
+            TreePopulator.SizeDistribution.fixed(config.metaFileSize), payloads, seed, config.setupThreads, fileIndex);
+    }
+
+    public TreePopulator getSetup() {
+        return setup;
+    }
+
+    private ByteBuffer content(Random random) {
+        int size = Math.max(0, config.metaFileSize);
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        if (size > 0) {
+            buffer.put(payloads.region(), payloads.offsetFor(size, random), size);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    // CREATE_NEW makes a name collision an error instead of a silent overwrite
+    private static void writeFile(Path path, ByteBuffer data) throws IOException {
+        if (!data.hasRemaining()) {
+            Files.createFile(path);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = data.duplicate();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Grows or shrinks the number of worker threads; removed workers finish their
+     * current operation and exit.
+     */
+    public synchronized void setConcurrency(int count) {
+        if (!running) {
+            return;
+        }
+        while (workers.size() < count) {
+            int id = workerSequence++;
+            MetadataWorker worker = new MetadataWorker(id, SeededRandom.forWorker(seed, "file", id));
+            workers.add(worker);
+            executor.submit(worker);
+        }
+        while (workers.size() > count) {
+            workers.remove(workers.size() - 1).active = false;
+        }
+    }
+
+    public void stop() {
+        running = false;
+        setup.cancel();
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        // Before FileStressTest cleans up the tree, so the teardown is not in the rates
+        endTime = System.nanoTime();
+    }
+
+    public void printStatistics() {
+        double seconds = ((endTime != 0 ? endTime : System.nanoTime()) - startTime) / 1_000_000_000.0;
+        System.out.println("Metadata Workload:");
+        System.out.println("  Leaf directories: " + (leaves != null ? leaves.length : 0) + ", files now: " + fileIndex.size());
+        StringBuilder rates = new StringBuilder();
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            rates.append(i > 0 ? ", " : "").append(String.format("%s %.0f", OPERATIONS[i], completed[i].sum() / seconds));
+        }
+        System.out.println("  Ops/s: " + rates);
+        System.out.printf("  Entries listed/s: %.0f (%d total)%n", entriesListed.sum() / seconds, entriesListed.sum());
+        System.out.println("  Errors: " + errors.sum());
+        for (LatencyTracker tracker : latency) {
+            tracker.printSummary();
+        }
+    }
+
+    public void collectCounters(Map<String, Long> counters) {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            counters.put("file.meta." + OPERATIONS[i], completed[i].sum());
+        }
+        counters.put("file.meta.entries", entriesListed.sum());
+        counters.put("file.meta.errors", errors.sum());
+    }
+
+    public void collectHistograms(Map<String, LatencyHistogram> histograms) {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            histograms.put("file.meta." + OPERATIONS[i], latency[i].snapshot());
+        }
+    }
+
+    // One thread drawing operations from the configured mix
+    private final class MetadataWorker implements Runnable {
+        private final int id;
+        private final Random random;
+        private final AccessDistribution access;
+        private final LatencyHistogram[] recorders = new LatencyHistogram[OPERATIONS.length];
+        private final RateSchedule schedule;
+        private final ByteBuffer data;
+        private volatile boolean active = true;
+        private long sequence;
+
+        MetadataWorker(int id, Random random) {
+            this.id = id;
+            this.random = random;
+            this.access = AccessDistribution.create(config.fileAccess);
+            for (int i = 0; i < OPERATIONS.length; i++) {
+                recorders[i] = latency[i].newRecorder();
+            }
+            this.schedule = RateSchedule.forThread(targetRate, "uniform", random);
+            this.data = content(random);
+        }
+
+        @Override
+        public void run() {
+            try {
+                runOperations();
+            } finally {
+                for (int i = 0; i < OPERATIONS.length; i++) {
+                    latency[i].retire(recorders[i]);
+                }
+            }
+        }
+
+        private void runOperations() {
+            for (int i = 0; i < config.iterations && running && active; i++) {
+                if (schedule != null) {
+                    try {
+                        schedule.awaitNext();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                int operation = nextOperation();
+                try {
+                    long start = System.nanoTime();
+                    if (perform(operation)) {
+                        recorders[operation].record(System.nanoTime() - start);
+                        completed[operation].increment();
+                    }
+                } catch (IOException e) {
+                    errors.increment();
+                    AsyncLog.warn("[FILE TEST] Metadata worker " + id + " " + OPERATIONS[operation]
+                        + " failed: " + e);
+                }
+            }
+        }
+
+        private int nextOperation() {
+            double draw = random.nextDouble();
+            for (int i = 0; i < cumulativeMix.length - 1; i++) {
+                if (draw < cumulativeMix[i]) {
+                    return i;
+                }
+            }
+            return cumulativeMix.length - 1;
+        }
+
+        // Returns false when the operation had no target, e.g. the picked file was
+        // already deleted by another thread; such attempts are not counted
+        private boolean perform(int operation) throws IOException {
+            if (operation == CREATE) {
+                File file = new File(leaves[access.next(random, leaves.length)], "m_" + id + "_" + sequence++);
+                writeFile(file.toPath(), data);
+                fileIndex.add(file);
+                return true;
+            }
+            if (operation == LIST) {
+                long entries = 0;
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(leaves[access.next(random, leaves.length)].toPath())) {
+                    for (Path ignored : stream) {
+                        entries++;
+                    }
+                }
+                entriesListed.add(entries);
+                return true;
+            }
+            File file = fileIndex.pick(access, random);
+            if (file == null) {
+                return false;
+            }
+            try {
+                switch (operation) {
+                    case STAT:
+                        Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+                        return true;
+                    case OPEN:
+                        FileChannel.open(file.toPath(), StandardOpenOption.READ).close();
+                        return true;
+                    case RENAME:
+                        return rename(file, new File(file.getParentFile(), "r_" + id + "_" + sequence++));
+                    case MOVE:
+                        return rename(file, new File(leaves[random.nextInt(leaves.length)], "v_" + id + "_" + sequence++));
+                    default: // DELETE
+                        Files.delete(file.toPath());
+                        fileIndex.remove(file);
+                        return true;
+                }
+            } catch (NoSuchFileException e) {
+                // Renamed or deleted by another thread since it was picked
+                fileIndex.remove(file);
+                return false;
+            }
+        }
+
+        private boolean rename(File from, File to) throws IOException {
+            Files.move(from.toPath(), to.toPath());
+            fileIndex.remove(from);
+            fileIndex.add(to);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.stresstest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the running test's counters, gauges and latency histograms at /metrics in the
+ * Prometheus text format, on the JDK's built-in HTTP server. Every scrape reads the same
+ * lock-free snapshots as the interval reporter, so workers are never paused. Dotted
+ * counter keys become metric families with protocol, port, workload and operation labels.
+ */
+public class MetricsServer {
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final double[] BUCKET_SECONDS =
+        {0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    private static final long[] BUCKET_NANOS = new long[BUCKET_SECONDS.length];
+    private static final Set<String> FILE_OPERATIONS = new HashSet<>(Arrays.asList(
+        "create", "read", "write", "append", "rename", "delete", "mkdir", "rmdir", "stat", "open", "move", "list"));
+
+    static {
+        for (int i = 0; i < BUCKET_SECONDS.length; i++) {
+            BUCKET_NANOS[i] = (long) (BUCKET_SECONDS[i] * 1_000_000_000L);
+        }
+    }
+
+    private final int port;
+    private final StressTest source;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public MetricsServer(int port, StressTest source) {
+        this.port = port;
+        this.source = source;
+    }
+
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/metrics", this::handle);
+        server.start();
+        System.out.println("Metrics: http://localhost:" + port + "/metrics");
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * The exposition text. Samples are grouped per family, as the format requires one
+     * TYPE line followed by all samples of that family.
+     */
+    String render() {
+        Map<String, Family> families = new LinkedHashMap<>();
+        Map<String, Map<Integer, Long>> portCounters = source.collectPortCounters();
+
+        for (Map.Entry<String, Long> entry : source.collectCounters().entrySet()) {
+            Map<Integer, Long> ports = portCounters.get(entry.getKey());
+            Series series = series(entry.getKey());
+            Family family = family(families, series.name + "_total", "counter");
+            if (ports == null) {
+                family.sample(series.name + "_total", series.labels, entry.getValue());
+                continue;
+            }
+            // Broken down by port instead; the total is their sum
+            for (Map.Entry<Integer, Long> port : ports.entrySet()) {
+                family.sample(series.name + "_total", series.labels + label("port", port.getKey().toString()),
+                    port.getValue());
+            }
+        }
+
+        for (Map.Entry<String, Long> entry : source.collectGauges().entrySet()) {
+            Series series = series(entry.getKey());
+            family(families, series.name, "gauge").sample(series.name, series.labels, entry.getValue());
+        }
+
+        for (Map.Entry<String, LatencyHistogram> entry : source.collectHistograms().entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            Series series = latencySeries(entry.getKey());
+            Family family = family(families, series.name, "histogram");
+            long[] cumulative = histogram.cumulativeCounts(BUCKET_NANOS);
+            for (int i = 0; i < BUCKET_SECONDS.length; i++) {
+                family.sample(series.name + "_bucket", series.labels + label("le", format(BUCKET_SECONDS[i])),
+                    cumulative[i]);
+            }
+            family.sample(series.name + "_bucket", series.labels + label("le", "+Inf"), histogram.getCount());
+            family.sample(series.name + "_sum", series.labels, histogram.getTotalNanos() / 1_000_000_000.0);
+            family.sample(series.name + "_count", series.labels, histogram.getCount());
+        }
+
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            out.append("# TYPE ").append(entry.getKey()).append(' ').append(entry.getValue().type).append('\n');
+            out.append(entry.getValue().samples);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Maps a counter or gauge key to a metric name and labels:
+     * tcp.client.requests -> mystress_client_requests{protocol="tcp"},
+     * tcp.client.connect.refused -> mystress_client_connect_failures{protocol="tcp",reason="refused"},
+     * file.meta.stat -> mystress_file_operations{workload="metadata",operation="stat"}.
+     * Keys of other shapes keep their name with dots as underscores.
+     */
+    static Series series(String key) {
+        String[] parts = key.split("\\.");
+        if ((parts[0].equals("tcp") || parts[0].equals("udp")) && parts.length >= 3) {
+            String labels = label("protocol", parts[0]);
+            if (parts.length == 4 && parts[2].equals("connect")) {
+                return new Series("mystress_" + parts[1] + "_connect_failures", labels + label("reason", parts[3]));
+            }
+            if (parts.length == 3) {
+                return new Series("mystress_" + parts[1] + "_" + snake(parts[2]), labels);
+            }
+        }
+        if (parts[0].equals("file") && (parts.length == 2 || parts.length == 3)) {
+            String workload = parts.length == 2 ? "files" : parts[1].equals("meta") ? "metadata" : parts[1];
+            String name = parts[parts.length - 1];
+            String labels = label("workload", workload);
+            if (FILE_OPERATIONS.contains(name)) {
+                return new Series("mystress_file_operations", labels + label("operation", name));
+            }
+            if (name.equals("bytesRead") || name.equals("bytesWritten")) {
+                return new Series("mystress_file_bytes", labels + label("direction", name.equals("bytesRead") ? "read" : "write"));
+            }
+            if (name.equals("entries")) {
+                return new Series("mystress_file_listed_entries", labels);
+            }
+            return new Series("mystress_file_" + snake(name), labels);
+        }
+        return new Series("mystress_" + snake(key.replace('.', '_')), "");
+    }
+
+    /**
+     * Maps a histogram key to a latency family: tcp.client.request, file.&lt;engine&gt;.write,
+     * file.block.&lt;size&gt;.read and file.meta.&lt;op&gt; each get their own labels.
+     */
+    static Series latencySeries(String key) {
+        String[] parts = key.split("\\.");
+        if ((parts[0].equals("tcp") || parts[0].equals("udp")) && parts.length == 3) {
+            return new Series("mystress_" + parts[1] + "_latency_seconds",
+                label("protocol", parts[0]) + label("operation", parts[2]));
+        }
+        if (parts[0].equals("file") && parts.length == 4 && parts[1].equals("block")) {
+            return new Series("mystress_file_latency_seconds",
+                label("workload", "block") + label("block_size", parts[2]) + label("operation", parts[3]));
+        }
+        if (parts[0].equals("file") && parts.length == 3) {
+            if (parts[1].equals("meta")) {
+                return new Series("mystress_file_latency_seconds",
+                    label("workload", "metadata") + label("operation", parts[2]));
+            }
+            return new Series("mystress_file_latency_seconds",
+                label("workload", "files") + label("engine", parts[1]) + label("operation", parts[2]));
+        }
+        return new Series("mystress_" + snake(key.replace('.', '_')) + "_latency_seconds", "");
+    }
+
+    private static Family family(Map<String, Family> families, String name, String type) {
+        return families.computeIfAbsent(name, n -> new Family(type));
+    }
+
+    // Labels are kept as a ",name=\"value\"" fragment list; the leading comma is dropped when written
+    private static String label(String name, String value) {
+        return "," + name + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+
+    private static String snake(String name) {
+        StringBuilder out = new StringBuilder();
+        for (char c : name.toCharArray()) {
+            if (Character.isUpperCase(c)) {
+                out.append('_').append(Character.toLowerCase(c));
+            } else {
+                out.append(Character.isLetterOrDigit(c) ? c : '_');
+            }
+        }
+        return out.toString();
+    }
+
+    private static String format(double value) {
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+
+    static final class Series {
+        final String name;
+        final String labels;
+
+        Series(String name, String labels) {
+            this.name = name;
+            this.labels = labels;
+        }
+    }
+
+    private static final class Family {
+        final String type;
+        final StringBuilder samples = new StringBuilder();
+
+        Family(String type) {
+            this.type = type;
+        }
+
+        void sample(String name, String labels, double value) {
+            samples.append(name);
+            if (!labels.isEmpty()) {
+                samples.append('{').append(labels, 1, labels.length()).append('}');
+            }
+            samples.append(' ');
+            if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+                samples.append((long) value);
+            } else {
+                samples.append(value);
+            }
+            samples.append('\n');
+        }
+    }
+}
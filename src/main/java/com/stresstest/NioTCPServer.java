@@ -0,0 +1,262 @@
+package com.stresstest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Echo server engine that serves the whole TCP port range from a small fixed
+ * set of Selector event loops instead of one thread per port and per connection.
+ */
+public class NioTCPServer {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Config.ServerConfig config;
+    private final LongAdder connectionCount;
+    private final LongAdder totalBytesReceived;
+    private final ConcurrencyGauge sessions;
+    private final PortCounters portConnections;
+    private final List<EventLoop> loops = new ArrayList<>();
+    private final List<ServerSocketChannel> serverChannels = new ArrayList<>();
+    private volatile boolean running = false;
+
+    public NioTCPServer(Config.ServerConfig config, LongAdder connectionCount, LongAdder totalBytesReceived,
+                        ConcurrencyGauge sessions, PortCounters portConnections) {
+        this.config = config;
+        this.connectionCount = connectionCount;
+        this.totalBytesReceived = totalBytesReceived;
+        this.sessions = sessions;
+        this.portConnections = portConnections;
+    }
+
+    public void start() {
+        int loopCount = config.tcpSelectorThreads > 0
+            ? config.tcpSelectorThreads : Runtime.getRuntime().availableProcessors();
+
+        running = true;
+
+        try {
+            for (int i = 0; i < loopCount; i++) {
+                loops.add(new EventLoop(i));
+            }
+        } catch (IOException e) {
+            System.err.println("Error opening selector: " + e.getMessage());
+            stop();
+            return;
+        }
+
+        // Listening sockets are spread across the loops; accepted connections are
+        // handed out round-robin so one busy port does not pin a single loop.
+        int index = 0;
+        for (int port = config.tcpPortRange.start; port <= config.tcpPortRange.end; port++) {
+            try {
+                ServerSocketChannel serverChannel = ServerSocketChannel.open();
+                serverChannel.configureBlocking(false);
+                SocketTuning.bind(serverChannel.socket(), port, config.tcpBacklog, config.socketOptions);
+                serverChannels.add(serverChannel);
+                loops.get(index++ % loops.size()).register(serverChannel);
+                AsyncLog.info("TCP Server listening on port " + port);
+            } catch (IOException e) {
+                AsyncLog.error("Error starting TCP server on port " + port + ": " + e.getMessage());
+            }
+        }
+
+        for (EventLoop loop : loops) {
+            loop.thread.start();
+        }
+
+        System.out.println("TCP Server (nio, " + loops.size() + " event loops) started on ports "
+            + config.tcpPortRange.start + "-" + config.tcpPortRange.end);
+    }
+
+    public void stop() {
+        running = false;
+        for (EventLoop loop : loops) {
+            loop.selector.wakeup();
+        }
+    }
+
+    private EventLoop nextLoop(long sequence) {
+        return loops.get((int) (sequence % loops.size()));
+    }
+
+    private static void closeQuietly(java.io.Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+
+    private final class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Thread thread;
+        private final int id;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final Queue<Object> pendingRegistrations = new ConcurrentLinkedQueue<>();
+        private long acceptSequence;
+
+        EventLoop(int id) throws IOException {
+            this.id = id;
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "tcp-nio-" + id);
+            this.thread.setDaemon(true);
+        }
+
+        void register(Object channel) {
+            pendingRegistrations.add(channel);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select();
+                    processRegistrations();
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        try {
+                            if (key.isAcceptable()) {
+                                accept((ServerSocketChannel) key.channel());
+                            } else {
+                                if (key.isWritable()) {
+                                    flushPending(key);
+                                }
+                                if (key.isValid() && key.isReadable()) {
+                                    echo(key);
+                                }
+                            }
+                        } catch (IOException e) {
+                            // Connection closed or error - this is expected
+                            key.cancel();
+                            if (key.channel() instanceof SocketChannel) {
+                                sessions.close();
+                            }
+                            closeQuietly(key.channel());
+                        }
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                if (running) {
+                    AsyncLog.warn("TCP event loop error: " + e.getMessage());
+                }
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    closeQuietly(key.channel());
+                }
+                closeQuietly(selector);
+            }
+        }
+
+        private void processRegistrations() throws IOException {
+            Object channel;
+            while ((channel = pendingRegistrations.poll()) != null) {
+                if (channel instanceof ServerSocketChannel) {
+                    ((ServerSocketChannel) channel).register(selector, SelectionKey.OP_ACCEPT);
+                    continue;
+                }
+                try {
+                    ((SocketChannel) channel).register(selector, SelectionKey.OP_READ);
+                } catch (IOException e) {
+                    // Closed by the peer before it was handed over
+                    sessions.close();
+                    closeQuietly((SocketChannel) channel);
+                }
+            }
+        }
+
+        // Errors here concern one client (or a full descriptor table), never the listening
+        // socket: the OP_ACCEPT key stays registered and the port keeps accepting
+        private void accept(ServerSocketChannel serverChannel) {
+            int portIndex = serverChannel.socket().getLocalPort() - config.tcpPortRange.start;
+            while (true) {
+                SocketChannel client;
+                try {
+                    client = serverChannel.accept();
+                } catch (IOException e) {
+                    AsyncLog.warn("TCP accept error on port " + serverChannel.socket().getLocalPort() + ": " + e);
+                    return;
+                }
+                if (client == null) {
+                    return;
+                }
+                connectionCount.increment();
+                portConnections.increment(portIndex);
+                sessions.open();
+                try {
+                    SocketTuning.configure(client.socket(), config.socketOptions);
+                    client.configureBlocking(false);
+                    EventLoop target = nextLoop(acceptSequence++ + id);
+                    if (target == this) {
+                        client.register(selector, SelectionKey.OP_READ);
+                    } else {
+                        target.register(client);
+                    }
+                } catch (IOException e) {
+                    sessions.close();
+                    closeQuietly(client);
+                    AsyncLog.warn("TCP accept error on port " + serverChannel.socket().getLocalPort()
+                        + ", connection dropped: " + e);
+                }
+            }
+        }
+
+        private void echo(SelectionKey key) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            buffer.clear();
+            int bytesRead = channel.read(buffer);
+            if (bytesRead == -1) {
+                key.cancel();
+                sessions.close();
+                channel.close();
+                return;
+            }
+            if (bytesRead == 0) {
+                return;
+            }
+            totalBytesReceived.add(bytesRead);
+
+            // Echo back to client
+            buffer.flip();
+            channel.write(buffer);
+            if (buffer.hasRemaining()) {
+                // Socket send buffer is full: park the remainder on the connection and
+                // stop reading until it drains, so the shared buffer stays reusable.
+                ByteBuffer pending = ByteBuffer.allocate(buffer.remaining());
+                pending.put(buffer);
+                pending.flip();
+                key.attach(pending);
+                key.interestOps(SelectionKey.OP_WRITE);
+            }
+        }
+
+        private void flushPending(SelectionKey key) throws IOException {
+            ByteBuffer pending = (ByteBuffer) key.attachment();
+            if (pending != null) {
+                ((SocketChannel) key.channel()).write(pending);
+                if (pending.hasRemaining()) {
+                    return;
+                }
+                key.attach(null);
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.stresstest;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Echo server engine that multiplexes every UDP port onto a few Selector loops,
+ * receiving into and echoing from one reused direct buffer per loop.
+ */
+public class NioUDPServer {
+    private static final int BUFFER_SIZE = 65536;
+    // Datagrams read from one port per select() pass, so a flooded port cannot starve the others
+    private static final int MAX_DATAGRAMS_PER_PASS = 64;
+
+    private final Config.ServerConfig config;
+    private final LongAdder packetCount;
+    private final LongAdder totalBytesReceived;
+    private final PortCounters portPackets;
+    private final List<EventLoop> loops = new ArrayList<>();
+    private volatile boolean running = false;
+
+    public NioUDPServer(Config.ServerConfig config, LongAdder packetCount, LongAdder totalBytesReceived,
+                        PortCounters portPackets) {
+        this.config = config;
+        this.packetCount = packetCount;
+        this.totalBytesReceived = totalBytesReceived;
+        this.portPackets = portPackets;
+    }
+
+    public void start() {
+        int loopCount = config.udpSelectorThreads > 0
+            ? config.udpSelectorThreads : Runtime.getRuntime().availableProcessors();
+
+        running = true;
+
+        try {
+            for (int i = 0; i < loopCount; i++) {
+                loops.add(new EventLoop(i));
+            }
+        } catch (IOException e) {
+            System.err.println("Error opening selector: " + e.getMessage());
+            stop();
+            return;
+        }
+
+        int index = 0;
+        for (int port = config.udpPortRange.start; port <= config.udpPortRange.end; port++) {
+            try {
+                DatagramChannel channel = DatagramChannel.open();
+                channel.configureBlocking(false);
+                channel.bind(new InetSocketAddress(port));
+                channel.register(loops.get(index++ % loops.size()).selector, SelectionKey.OP_READ,
+                    port - config.udpPortRange.start);
+                AsyncLog.info("UDP Server listening on port " + port);
+            } catch (IOException e) {
+                AsyncLog.error("Error starting UDP server on port " + port + ": " + e.getMessage());
+            }
+        }
+
+        for (EventLoop loop : loops) {
+            loop.thread.start();
+        }
+
+        System.out.println("UDP Server (nio, " + loops.size() + " event loops) started on ports "
+            + config.udpPortRange.start + "-" + config.udpPortRange.end);
+    }
+
+    public void stop() {
+        running = false;
+        for (EventLoop loop : loops) {
+            loop.selector.wakeup();
+        }
+    }
+
+    private final class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Thread thread;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        EventLoop(int id) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "udp-nio-" + id);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select();
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (key.isValid() && key.isReadable()) {
+                            drain(key);
+                        }
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                if (running) {
+                    AsyncLog.warn("UDP event loop error: " + e.getMessage());
+                }
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    try {
+                        key.channel().close();
+                    } catch (IOException e) {
+                        // Ignore
+                    }
+                }
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+
+        private void drain(SelectionKey key) {
+            DatagramChannel channel = (DatagramChannel) key.channel();
+            int portIndex = (Integer) key.attachment();
+            try {
+                // Datagrams left over keep the key readable, so the next select() returns at once
+                for (int i = 0; i < MAX_DATAGRAMS_PER_PASS && running; i++) {
+                    buffer.clear();
+                    SocketAddress sender = channel.receive(buffer);
+                    if (sender == null) {
+                        break;
+                    }
+                    buffer.flip();
+                    packetCount.increment();
+                    totalBytesReceived.add(buffer.remaining());
+                    portPackets.increment(portIndex);
+
+                    // Echo back to client; a full send buffer just drops the echo
+                    channel.send(buffer, sender);
+                }
+            } catch (IOException e) {
+                if (running) {
+                    AsyncLog.warn("Error receiving UDP packet on port "
+                        + (config.udpPortRange.start + portIndex) + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+}
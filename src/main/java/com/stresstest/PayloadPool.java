@@ -0,0 +1,30 @@
+package com.stresstest;
+
+import java.util.Random;
+
+/**
+ * One large region of random bytes, filled once at startup. Workers send and write
+ * slices of it at random offsets instead of generating a fresh array per operation.
+ * The region is shared and must be treated as read-only.
+ */
+public class PayloadPool {
+    private static final int MIN_REGION_SIZE = 4 * 1024 * 1024;
+
+    private final byte[] region;
+
+    public PayloadPool(int maxPayloadSize, Random random) {
+        this.region = new byte[Math.max(MIN_REGION_SIZE, maxPayloadSize * 2)];
+        random.nextBytes(region);
+    }
+
+    public byte[] region() {
+        return region;
+    }
+
+    /**
+     * Returns a random offset at which a payload of the given length fits in the region.
+     */
+    public int offsetFor(int length, Random random) {
+        return random.nextInt(region.length - length + 1);
+    }
+}
@@ -0,0 +1,35 @@
+package com.stresstest;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * One counter per port in a range. Each counter sits on its own cache line so
+ * threads serving neighbouring ports do not invalidate each other.
+ */
+public class PortCounters {
+    private static final int STRIDE = 8; // 8 longs = 64 bytes
+
+    private final AtomicLongArray counts;
+    private final int size;
+
+    public PortCounters(int size) {
+        this.size = size;
+        this.counts = new AtomicLongArray(size * STRIDE);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void increment(int index) {
+        counts.incrementAndGet(index * STRIDE);
+    }
+
+    public void add(int index, long delta) {
+        counts.addAndGet(index * STRIDE, delta);
+    }
+
+    public long get(int index) {
+        return counts.get(index * STRIDE);
+    }
+}
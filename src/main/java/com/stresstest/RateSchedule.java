@@ -0,0 +1,73 @@
+package com.stresstest;
+
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop send schedule for one worker thread. Intended send times advance
+ * independently of how long each request takes, so latency measured from the
+ * intended time includes any time the request spent waiting behind a stall.
+ */
+public class RateSchedule {
+    // Longest uninterrupted wait, so a rate change is picked up without waiting out an old, long gap
+    private static final long RATE_CHECK_NANOS = 10_000_000L;
+
+    private final TargetRate rate;
+    private final boolean poisson;
+    private final Random random;
+    private double next;
+    private double previous;
+    private double intervalSeen;
+
+    public RateSchedule(TargetRate rate, String distribution, Random random) {
+        this.rate = rate;
+        this.poisson = "poisson".equalsIgnoreCase(distribution);
+        this.random = random;
+        this.intervalSeen = rate.meanIntervalNanos();
+        this.previous = System.nanoTime();
+        // Stagger the first send so threads started together do not fire in lockstep
+        this.next = previous + random.nextDouble() * intervalSeen;
+    }
+
+    /**
+     * Returns a per-thread schedule, or null when the workload is closed-loop.
+     */
+    public static RateSchedule forThread(TargetRate rate, String distribution, Random random) {
+        if (rate == null || !rate.isOpenLoop()) {
+            return null;
+        }
+        return new RateSchedule(rate, distribution, random);
+    }
+
+    /**
+     * Waits for the next slot and returns its intended send time (System.nanoTime based).
+     * When the worker is behind schedule this returns immediately with a time in the past.
+     */
+    public long awaitNext() throws InterruptedException {
+        long remaining;
+        while ((remaining = (long) next - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(Math.min(remaining, RATE_CHECK_NANOS));
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (rate.meanIntervalNanos() != intervalSeen) {
+                // The rate changed while waiting: re-draw this gap at the new rate
+                next = previous + nextInterval();
+            }
+        }
+        long intended = (long) next;
+        previous = next;
+        next += nextInterval();
+        return intended;
+    }
+
+    private double nextInterval() {
+        double meanIntervalNanos = rate.meanIntervalNanos();
+        intervalSeen = meanIntervalNanos;
+        if (poisson) {
+            // Exponentially distributed gaps give Poisson arrivals
+            return -Math.log(1.0 - random.nextDouble()) * meanIntervalNanos;
+        }
+        return meanIntervalNanos;
+    }
+}
@@ -0,0 +1,427 @@
+package com.stresstest;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Samples what the generator itself consumes, once per reporting interval: process
+ * CPU, CPU per worker pool (threads grouped by name without the trailing number),
+ * GC, heap and direct buffers, open file descriptors, and the /proc/net/dev and
+ * /proc/diskstats totals. A sample whose CPU, GC share, descriptor count or single
+ * thread is over its limit marks the interval as saturated: throughput measured in
+ * it is bounded by the generator, not by the system under test.
+ */
+public class ResourceSampler {
+    private static final double MB = 1024.0 * 1024;
+    private static final int TOP_POOLS = 6;
+
+    private final Config.ResourceConfig config;
+    private final int cores = Runtime.getRuntime().availableProcessors();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final boolean threadCpu;
+    private long previousTime;
+    private long previousProcessCpu;
+    private long previousGcCount;
+    private long previousGcMillis;
+    private Map<Long, Long> previousThreadCpu = new HashMap<>();
+    private long[] previousNet;
+    private Map<String, long[]> previousDisks;
+
+    // Whole-run figures for the summary
+    private int intervals;
+    private double cpuPercentSum;
+    private double peakCpuPercent;
+    private double peakHeapMB;
+    private double peakDirectMB;
+    private long peakFds;
+    private long maxFds = -1;
+    private double peakDiskUtil;
+    private final long[] netTotals = new long[2];
+    private final long[] diskTotals = new long[2];
+    private final Map<String, Double> poolCpuSeconds = new HashMap<>();
+    private final Map<String, Integer> saturated = new LinkedHashMap<>();
+    private int saturatedIntervals;
+    private String lastReasons = "";
+
+    public ResourceSampler(Config.ResourceConfig config) {
+        this.config = config;
+        boolean supported = threads.isThreadCpuTimeSupported();
+        if (supported && !threads.isThreadCpuTimeEnabled()) {
+            threads.setThreadCpuTimeEnabled(true);
+        }
+        this.threadCpu = supported;
+        for (String reason : new String[] {"cpu", "gc", "fd", "thread"}) {
+            saturated.put(reason, 0);
+        }
+    }
+
+    /**
+     * Takes the baseline the first interval is measured against.
+     */
+    public synchronized void start() {
+        previousTime = System.nanoTime();
+        previousProcessCpu = JvmStats.processCpuNanos();
+        previousGcCount = JvmStats.gcCount();
+        previousGcMillis = JvmStats.gcTimeMillis();
+        previousThreadCpu = threadCpuTimes(new HashMap<>());
+        previousNet = readNetDev();
+        previousDisks = readDiskStats();
+    }
+
+    /**
+     * Values for the interval since the previous call. Keys are "group.name" like the
+     * counters; percentages of CPU are of one core, so 4 busy cores read 400.
+     */
+    public synchronized Sample sample() {
+        long now = System.nanoTime();
+        double seconds = (now - previousTime) / 1_000_000_000.0;
+        Sample sample = new Sample();
+        Map<String, Double> values = sample.values;
+
+        long processCpu = JvmStats.processCpuNanos();
+        double cpuPercent = processCpu >= 0 && previousProcessCpu >= 0
+            ? (processCpu - previousProcessCpu) / 1e9 / seconds * 100 : -1;
+        values.put("process.cpuPercent", cpuPercent);
+        values.put("process.cores", (double) cores);
+
+        long gcCount = JvmStats.gcCount();
+        long gcMillis = JvmStats.gcTimeMillis();
+        double gcPercent = (gcMillis - previousGcMillis) / 10.0 / seconds;
+        values.put("gc.collections", (double) (gcCount - previousGcCount));
+        values.put("gc.timeMillis", (double) (gcMillis - previousGcMillis));
+        values.put("gc.timePercent", gcPercent);
+
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        double heapUsedMB = heap.getUsed() / MB;
+        values.put("heap.usedMB", heapUsedMB);
+        values.put("heap.maxMB", heap.getMax() > 0 ? heap.getMax() / MB : heap.getCommitted() / MB);
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            values.put("buffers." + pool.getName() + "MB", pool.getMemoryUsed() / MB);
+        }
+
+        long[] fds = openFileDescriptors();
+        values.put("fd.open", (double) fds[0]);
+        values.put("fd.max", (double) fds[1]);
+
+        Map<String, Double> poolPercent = new HashMap<>();
+        String hottest = null;
+        double hottestPercent = 0;
+        if (threadCpu) {
+            Map<Long, String> names = new HashMap<>();
+            Map<Long, Long> current = threadCpuTimes(names);
+            for (Map.Entry<Long, Long> entry : current.entrySet()) {
+                Long before = previousThreadCpu.get(entry.getKey());
+                double percent = (entry.getValue() - (before != null ? before : 0)) / 1e9 / seconds * 100;
+                String name = names.get(entry.getKey());
+                poolPercent.merge(poolName(name), percent, Double::sum);
+                if (percent > hottestPercent) {
+                    hottestPercent = percent;
+                    hottest = name;
+                }
+            }
+            previousThreadCpu = current;
+            values.put("threads.live", (double) current.size());
+        }
+        for (Map.Entry<String, Double> pool : poolPercent.entrySet()) {
+            values.put("threads." + pool.getKey() + ".cpuPercent", pool.getValue());
+            poolCpuSeconds.merge(pool.getKey(), pool.getValue() / 100 * seconds, Double::sum);
+        }
+
+        long[] net = readNetDev();
+        if (net != null && previousNet != null) {
+            values.put("net.rxMBps", (net[0] - previousNet[0]) / MB / seconds);
+            values.put("net.txMBps", (net[1] - previousNet[1]) / MB / seconds);
+            values.put("net.rxPacketsPerSecond", (net[2] - previousNet[2]) / seconds);
+            values.put("net.txPacketsPerSecond", (net[3] - previousNet[3]) / seconds);
+            values.put("net.drops", (double) (net[4] - previousNet[4]));
+            values.put("net.errors", (double) (net[5] - previousNet[5]));
+            netTotals[0] += net[0] - previousNet[0];
+            netTotals[1] += net[1] - previousNet[1];
+        }
+        previousNet = net;
+
+        Map<String, long[]> disks = readDiskStats();
+        if (disks != null && previousDisks != null) {
+            long read = 0;
+            long written = 0;
+            double util = 0;
+            for (Map.Entry<String, long[]> disk : disks.entrySet()) {
+                long[] before = previousDisks.get(disk.getKey());
+                if (before == null) {
+                    continue;
+                }
+                read += disk.getValue()[0] - before[0];
+                written += disk.getValue()[1] - before[1];
+                util = Math.max(util, (disk.getValue()[2] - before[2]) / 10.0 / seconds);
+            }
+            values.put("disk.readMBps", read / MB / seconds);
+            values.put("disk.writeMBps", written / MB / seconds);
+            values.put("disk.utilPercent", Math.min(util, 100));
+            diskTotals[0] += read;
+            diskTotals[1] += written;
+            peakDiskUtil = Math.max(peakDiskUtil, Math.min(util, 100));
+        }
+        previousDisks = disks;
+
+        // Saturation: the generator, not the target, limited this interval
+        List<String> reasons = new ArrayList<>();
+        if (cpuPercent >= 0 && config.cpuPercent > 0 && cpuPercent >= config.cpuPercent * cores) {
+            reasons.add(String.format("process CPU %.0f%% of %d%% (%d cores)", cpuPercent, cores * 100, cores));
+            saturated.merge("cpu", 1, Integer::sum);
+        }
+        if (config.gcPercent > 0 && gcPercent >= config.gcPercent) {
+            reasons.add(String.format("GC %.1f%% of the interval", gcPercent));
+            saturated.merge("gc", 1, Integer::sum);
+        }
+        if (fds[1] > 0 && config.fdPercent > 0 && fds[0] * 100.0 / fds[1] >= config.fdPercent) {
+            reasons.add("open file descriptors " + fds[0] + " of " + fds[1]);
+            saturated.merge("fd", 1, Integer::sum);
+        }
+        if (hottest != null && config.threadPercent > 0 && hottestPercent >= config.threadPercent) {
+            reasons.add(String.format("thread %s at %.0f%% of a core", hottest, hottestPercent));
+            saturated.merge("thread", 1, Integer::sum);
+        }
+        sample.warnings = reasons;
+        if (!reasons.isEmpty()) {
+            saturatedIntervals++;
+        }
+        // Reported when the set of limits changes, not every interval of a long saturated stretch
+        String reasonKey = String.join(",", reasons).replaceAll("[0-9.]+", "");
+        sample.saturationChanged = !reasonKey.equals(lastReasons);
+        lastReasons = reasonKey;
+
+        intervals++;
+        if (cpuPercent >= 0) {
+            cpuPercentSum += cpuPercent;
+            peakCpuPercent = Math.max(peakCpuPercent, cpuPercent);
+        }
+        peakHeapMB = Math.max(peakHeapMB, heapUsedMB);
+        Double direct = values.get("buffers.directMB");
+        peakDirectMB = Math.max(peakDirectMB, direct != null ? direct : 0);
+        peakFds = Math.max(peakFds, fds[0]);
+        maxFds = fds[1];
+
+        sample.poolPercent = poolPercent;
+        previousTime = now;
+        previousProcessCpu = processCpu;
+        previousGcCount = gcCount;
+        previousGcMillis = gcMillis;
+        return sample;
+    }
+
+    public synchronized void printSummary() {
+        if (intervals == 0) {
+            return;
+        }
+        System.out.println("Generator resources (" + intervals + " intervals):");
+        System.out.printf("  Process CPU: avg %.0f%%, peak %.0f%% of %d%% (%d cores)%n",
+            cpuPercentSum / intervals, peakCpuPercent, cores * 100, cores);
+        if (!poolCpuSeconds.isEmpty()) {
+            StringBuilder pools = new StringBuilder();
+            for (Map.Entry<String, Double> pool : top(poolCpuSeconds)) {
+                pools.append(pools.length() > 0 ? ", " : "").append(String.format("%s %.1f s", pool.getKey(), pool.getValue()));
+            }
+            System.out.println("  CPU by thread pool: " + pools);
+        }
+        System.out.printf("  Peak heap: %.0f MB, peak direct buffers: %.1f MB%n", peakHeapMB, peakDirectMB);
+        System.out.println("  Peak open file descriptors: " + peakFds + (maxFds > 0 ? " of " + maxFds : ""));
+        System.out.printf("  Network (all interfaces): rx %.1f MB, tx %.1f MB%n", netTotals[0] / MB, netTotals[1] / MB);
+        System.out.printf("  Disk: read %.1f MB, write %.1f MB, peak utilization %.0f%%%n",
+            diskTotals[0] / MB, diskTotals[1] / MB, peakDiskUtil);
+        if (saturatedIntervals == 0) {
+            System.out.println("  Generator saturated: never");
+            return;
+        }
+        StringBuilder reasons = new StringBuilder();
+        for (Map.Entry<String, Integer> reason : saturated.entrySet()) {
+            if (reason.getValue() > 0) {
+                reasons.append(reasons.length() > 0 ? ", " : "").append(reason.getKey()).append(' ').append(reason.getValue());
+            }
+        }
+        System.out.println("  Generator saturated: " + saturatedIntervals + " of " + intervals + " intervals ("
+            + reasons + "); throughput in those intervals was limited by the generator, not the target");
+    }
+
+    // Live thread id -> CPU nanos; fills names for the same ids
+    private Map<Long, Long> threadCpuTimes(Map<Long, String> names) {
+        Map<Long, Long> times = new HashMap<>();
+        if (!threadCpu) {
+            return times;
+        }
+        long[] ids = threads.getAllThreadIds();
+        ThreadInfo[] infos = threads.getThreadInfo(ids);
+        long[] cpu = new long[ids.length];
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            cpu = ((com.sun.management.ThreadMXBean) threads).getThreadCpuTime(ids);
+        } else {
+            for (int i = 0; i < ids.length; i++) {
+                cpu[i] = threads.getThreadCpuTime(ids[i]);
+            }
+        }
+        for (int i = 0; i < ids.length; i++) {
+            if (infos[i] != null && cpu[i] >= 0) {
+                times.put(ids[i], cpu[i]);
+                names.put(ids[i], infos[i].getThreadName());
+            }
+        }
+        return times;
+    }
+
+    // client-12 -> client, tcp-nio-0 -> tcp-nio, file-worker-3 -> file-worker
+    static String poolName(String threadName) {
+        String pool = threadName.replaceFirst("[-#]?\\d+$", "");
+        return pool.isEmpty() ? threadName : pool;
+    }
+
+    // {open, max}; max is -1 when unknown
+    private static long[] openFileDescriptors() {
+        java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.UnixOperatingSystemMXBean) {
+            com.sun.management.UnixOperatingSystemMXBean unix = (com.sun.management.UnixOperatingSystemMXBean) os;
+            return new long[] {unix.getOpenFileDescriptorCount(), unix.getMaxFileDescriptorCount()};
+        }
+        String[] fds = new File("/proc/self/fd").list();
+        return new long[] {fds != null ? fds.length : -1, -1};
+    }
+
+    // Sums over all interfaces, loopback included: {rxBytes, txBytes, rxPackets, txPackets, drops, errors}
+    private static long[] readNetDev() {
+        File file = new File("/proc/net/dev");
+        if (!file.canRead()) {
+            return null;
+        }
+        long[] totals = new long[6];
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int colon = line.indexOf(':');
+                if (colon < 0) {
+                    continue; // header
+                }
+                String[] fields = line.substring(colon + 1).trim().split("\\s+");
+                if (fields.length < 12) {
+                    continue;
+                }
+                totals[0] += Long.parseLong(fields[0]);
+                totals[1] += Long.parseLong(fields[8]);
+                totals[2] += Long.parseLong(fields[1]);
+                totals[3] += Long.parseLong(fields[9]);
+                totals[4] += Long.parseLong(fields[3]) + Long.parseLong(fields[11]);
+                totals[5] += Long.parseLong(fields[2]) + Long.parseLong(fields[10]);
+            }
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        }
+        return totals;
+    }
+
+    // Whole disks only (those under /sys/block, loop and ram devices skipped): name -> {bytesRead, bytesWritten, busyMillis}
+    private static Map<String, long[]> readDiskStats() {
+        File file = new File("/proc/diskstats");
+        if (!file.canRead()) {
+            return null;
+        }
+        Map<String, long[]> disks = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.trim().split("\\s+");
+                if (fields.length < 14) {
+                    continue;
+                }
+                String name = fields[2];
+                if (name.startsWith("loop") || name.startsWith("ram")
+                    || !new File("/sys/block/" + name.replace('/', '!')).exists()) {
+                    continue;
+                }
+                disks.put(name, new long[] {Long.parseLong(fields[5]) * 512, Long.parseLong(fields[9]) * 512,
+                    Long.parseLong(fields[12])});
+            }
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        }
+        return disks;
+    }
+
+    private static List<Map.Entry<String, Double>> top(Map<String, Double> values) {
+        List<Map.Entry<String, Double>> entries = new ArrayList<>(values.entrySet());
+        entries.sort((a, b) -> Double.compare(b.getValue(), a.getValue()));
+        return entries.subList(0, Math.min(TOP_POOLS, entries.size()));
+    }
+
+    /**
+     * One interval's values, plus the saturation limits it crossed.
+     */
+    public static final class Sample {
+        public final Map<String, Double> values = new LinkedHashMap<>();
+        public List<String> warnings;
+        // Whether warnings differ from the previous interval's
+        public boolean saturationChanged;
+        Map<String, Double> poolPercent;
+
+        /**
+         * Console lines for the interval report, keyed by label.
+         */
+        public Map<String, String> lines() {
+            Map<String, String> lines = new LinkedHashMap<>();
+            StringBuilder resources = new StringBuilder();
+            Double cpu = values.get("process.cpuPercent");
+            if (cpu != null && cpu >= 0) {
+                resources.append(String.format("cpu %.0f%%, ", cpu));
+            }
+            resources.append(String.format("gc %.1f%%, heap %.0f/%.0f MB", values.get("gc.timePercent"),
+                values.get("heap.usedMB"), values.get("heap.maxMB")));
+            Double direct = values.get("buffers.directMB");
+            if (direct != null) {
+                resources.append(String.format(", direct %.1f MB", direct));
+            }
+            resources.append(", fds ").append(values.get("fd.open").longValue());
+            if (values.get("fd.max") > 0) {
+                resources.append('/').append(values.get("fd.max").longValue());
+            }
+            lines.put("resources", resources.toString());
+
+            if (poolPercent != null && !poolPercent.isEmpty()) {
+                StringBuilder pools = new StringBuilder();
+                for (Map.Entry<String, Double> pool : top(poolPercent)) {
+                    if (pool.getValue() < 0.5) {
+                        break;
+                    }
+                    pools.append(pools.length() > 0 ? ", " : "").append(String.format("%s %.0f%%", pool.getKey(), pool.getValue()));
+                }
+                if (pools.length() > 0) {
+                    lines.put("thread cpu", pools.toString());
+                }
+            }
+
+            StringBuilder os = new StringBuilder();
+            if (values.containsKey("net.rxMBps")) {
+                os.append(String.format("net rx %.2f MB/s, tx %.2f MB/s", values.get("net.rxMBps"), values.get("net.txMBps")));
+                if (values.get("net.drops") > 0 || values.get("net.errors") > 0) {
+                    os.append(String.format(" (%d drops, %d errors)", values.get("net.drops").longValue(),
+                        values.get("net.errors").longValue()));
+                }
+            }
+            if (values.containsKey("disk.readMBps")) {
+                os.append(os.length() > 0 ? ", " : "").append(String.format("disk read %.2f MB/s, write %.2f MB/s, util %.0f%%",
+                    values.get("disk.readMBps"), values.get("disk.writeMBps"), values.get("disk.utilPercent")));
+            }
+            if (os.length() > 0) {
+                lines.put("os", os.toString());
+            }
+            return lines;
+        }
+    }
+}
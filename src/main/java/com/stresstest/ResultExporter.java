@@ -0,0 +1,96 @@
+package com.stresstest;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes run results to run.resultsDir: timeseries.csv gets one row per counter per
+ * reporting interval (long format, so new counters need no schema change), resources.csv
+ * the generator's own resource usage at the same elapsed seconds, and summary.json the
+ * measured-window summary at the end.
+ */
+public class ResultExporter {
+    public static final String SUMMARY_FILE = "summary.json";
+    public static final String TIMESERIES_FILE = "timeseries.csv";
+    public static final String RESOURCES_FILE = "resources.csv";
+
+    private final File directory;
+    private final Writer timeSeries;
+    private Writer resources;
+    private volatile String phase = "measure";
+
+    public ResultExporter(String directory) throws IOException {
+        this.directory = new File(directory);
+        if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+            throw new IOException("Cannot create results directory " + directory);
+        }
+        this.timeSeries = new BufferedWriter(new FileWriter(new File(this.directory, TIMESERIES_FILE)));
+        timeSeries.write("elapsedSeconds,phase,counter,perSecond\n");
+    }
+
+    /**
+     * Labels the following time-series rows ("warmup" or "measure").
+     */
+    public void setPhase(String phase) {
+        this.phase = phase;
+    }
+
+    public synchronized void writeInterval(long elapsedSeconds, Map<String, Double> rates) {
+        try {
+            for (Map.Entry<String, Double> entry : rates.entrySet()) {
+                timeSeries.write(elapsedSeconds + "," + phase + "," + entry.getKey() + ","
+                    + String.format(Locale.ROOT, "%.2f", entry.getValue()) + "\n");
+            }
+            timeSeries.flush();
+        } catch (IOException e) {
+            System.err.println("Failed to write time series: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes one interval's resource sample; the file is created on first use.
+     */
+    public synchronized void writeResources(long elapsedSeconds, Map<String, Double> values) {
+        try {
+            if (resources == null) {
+                resources = new BufferedWriter(new FileWriter(new File(directory, RESOURCES_FILE)));
+                resources.write("elapsedSeconds,phase,metric,value\n");
+            }
+            for (Map.Entry<String, Double> entry : values.entrySet()) {
+                resources.write(elapsedSeconds + "," + phase + "," + entry.getKey() + ","
+                    + String.format(Locale.ROOT, "%.2f", entry.getValue()) + "\n");
+            }
+            resources.flush();
+        } catch (IOException e) {
+            System.err.println("Failed to write resource samples: " + e.getMessage());
+        }
+    }
+
+    public synchronized void writeSummary(RunSummary summary) {
+        try (Writer writer = new FileWriter(new File(directory, SUMMARY_FILE))) {
+            RunSummary.GSON.toJson(summary, writer);
+        } catch (IOException e) {
+            System.err.println("Failed to write summary: " + e.getMessage());
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            timeSeries.close();
+            if (resources != null) {
+                resources.close();
+            }
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+
+    public String getDirectory() {
+        return directory.getPath();
+    }
+}
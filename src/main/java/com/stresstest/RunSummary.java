@@ -0,0 +1,140 @@
+package com.stresstest;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Machine-readable result of one run (summary.json): counter totals and rates plus
+ * latency percentiles, all over the measured window only (warm-up and shutdown drain
+ * excluded). {@link #compare} diffs two summaries for release gating.
+ */
+public class RunSummary {
+    static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    String startedAt;
+    long seed;
+    int warmupSeconds;
+    double measuredSeconds;
+    Map<String, Long> counters = new LinkedHashMap<>();
+    Map<String, Double> rates = new LinkedHashMap<>();
+    Map<String, Latency> latency = new LinkedHashMap<>();
+
+    static class Latency {
+        long count;
+        double meanMillis;
+        double p50Millis;
+        double p90Millis;
+        double p99Millis;
+        double p999Millis;
+        double maxMillis;
+
+        Latency(LatencyHistogram histogram) {
+            count = histogram.getCount();
+            meanMillis = histogram.getMean() / 1_000_000.0;
+            p50Millis = histogram.getValueAtPercentile(50) / 1_000_000.0;
+            p90Millis = histogram.getValueAtPercentile(90) / 1_000_000.0;
+            p99Millis = histogram.getValueAtPercentile(99) / 1_000_000.0;
+            p999Millis = histogram.getValueAtPercentile(99.9) / 1_000_000.0;
+            maxMillis = histogram.getMax() / 1_000_000.0;
+        }
+    }
+
+    /**
+     * Builds the summary of the window between two snapshots of the same counters and histograms.
+     */
+    static RunSummary between(Map<String, Long> startCounters, Map<String, LatencyHistogram> startHistograms,
+                              Map<String, Long> endCounters, Map<String, LatencyHistogram> endHistograms,
+                              double seconds) {
+        RunSummary summary = new RunSummary();
+        summary.measuredSeconds = seconds;
+        for (Map.Entry<String, Long> entry : endCounters.entrySet()) {
+            long total = entry.getValue() - startCounters.getOrDefault(entry.getKey(), 0L);
+            summary.counters.put(entry.getKey(), total);
+            summary.rates.put(entry.getKey(), seconds > 0 ? total / seconds : 0.0);
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : endHistograms.entrySet()) {
+            LatencyHistogram earlier = startHistograms.get(entry.getKey());
+            LatencyHistogram window = earlier != null ? entry.getValue().since(earlier) : entry.getValue();
+            if (window.getCount() > 0) {
+                summary.latency.put(entry.getKey(), new Latency(window));
+            }
+        }
+        return summary;
+    }
+
+    static RunSummary load(String path) throws IOException {
+        try (Reader reader = new FileReader(path)) {
+            return GSON.fromJson(reader, RunSummary.class);
+        }
+    }
+
+    /**
+     * Prints every throughput and latency difference and returns the number of regressions:
+     * a rate more than tolerance below the baseline, or a p50/p99 more than tolerance above
+     * it. Failure counters (errors, connect failures, dropped log messages) are lower-is-better
+     * and a clean baseline has rate 0, so they are reported separately and not gated.
+     */
+    static int compare(RunSummary baseline, RunSummary candidate, double tolerance) {
+        int regressions = 0;
+        System.out.println("Throughput (per second):");
+        for (Map.Entry<String, Double> entry : baseline.rates.entrySet()) {
+            String key = entry.getKey();
+            if (isFailureCounter(key)) {
+                continue;
+            }
+            double before = entry.getValue();
+            double after = candidate.rates.getOrDefault(key, 0.0);
+            boolean regressed = before > 0 && after < before * (1 - tolerance);
+            printChange(key, before, after, regressed);
+            if (regressed) {
+                regressions++;
+            }
+        }
+
+        System.out.println("Failures (per second, not gated):");
+        for (Map.Entry<String, Double> entry : baseline.rates.entrySet()) {
+            if (isFailureCounter(entry.getKey())) {
+                printChange(entry.getKey(), entry.getValue(), candidate.rates.getOrDefault(entry.getKey(), 0.0), false);
+            }
+        }
+
+        System.out.println("Latency (ms):");
+        for (Map.Entry<String, Latency> entry : baseline.latency.entrySet()) {
+            Latency before = entry.getValue();
+            Latency after = candidate.latency.get(entry.getKey());
+            if (after == null) {
+                System.out.println("  " + entry.getKey() + ": missing from candidate");
+                continue;
+            }
+            boolean p50Regressed = after.p50Millis > before.p50Millis * (1 + tolerance);
+            boolean p99Regressed = after.p99Millis > before.p99Millis * (1 + tolerance);
+            printChange(entry.getKey() + " p50", before.p50Millis, after.p50Millis, p50Regressed);
+            printChange(entry.getKey() + " p99", before.p99Millis, after.p99Millis, p99Regressed);
+            regressions += (p50Regressed ? 1 : 0) + (p99Regressed ? 1 : 0);
+        }
+        return regressions;
+    }
+
+    // Lower is better for these: errors, connect failures by category and dropped log messages
+    static boolean isFailureCounter(String key) {
+        if (key.endsWith("errors") || key.endsWith(".dropped")) {
+            return true;
+        }
+        for (String category : ConnectFailures.CATEGORIES) {
+            if (key.endsWith(".connect." + category)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void printChange(String label, double before, double after, boolean regressed) {
+        String change = before != 0 ? String.format("%+.1f%%", (after - before) * 100 / before) : "n/a";
+        System.out.printf("  %s: %.3f -> %.3f (%s)%s%n", label, before, after, change, regressed ? " REGRESSION" : "");
+    }
+}
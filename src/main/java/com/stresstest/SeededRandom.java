@@ -0,0 +1,51 @@
+package com.stresstest;
+
+import java.util.Random;
+
+/**
+ * Unsynchronized SplitMix64 generator for a single worker thread. It extends Random
+ * so it drops into existing code, but replaces the shared CAS-updated seed with a
+ * plain field. Every worker stream is derived from one master seed, so a run can be
+ * replayed with the same per-thread operation sequence.
+ */
+public class SeededRandom extends Random {
+    private static final long serialVersionUID = 1L;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private long state;
+
+    public SeededRandom(long seed) {
+        super(seed);
+    }
+
+    /**
+     * Independent stream for worker {@code index} of the named workload (e.g. "tcp", "file").
+     */
+    public static SeededRandom forWorker(long masterSeed, String stream, int index) {
+        long seed = mix(masterSeed ^ mix(stream.hashCode() * GOLDEN_GAMMA));
+        return new SeededRandom(mix(seed + (index + 1) * GOLDEN_GAMMA));
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        // Called from the Random constructor; only ever used before the worker starts
+        this.state = seed;
+    }
+
+    @Override
+    protected int next(int bits) {
+        return (int) (nextLong() >>> (64 - bits));
+    }
+
+    @Override
+    public long nextLong() {
+        state += GOLDEN_GAMMA;
+        return mix(state);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,59 @@
+package com.stresstest;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+
+/**
+ * Applies the socket options of a {@link Config.SocketConfig} to client, accepted and
+ * listening sockets. Unset options keep the JDK/OS defaults. Channel-based code passes
+ * channel.socket(), so every engine is tuned the same way.
+ */
+public final class SocketTuning {
+    private SocketTuning() {
+    }
+
+    /**
+     * Options for a connected (or about to connect) socket. Call before connect() so the
+     * receive buffer size can take part in window scaling.
+     */
+    public static void configure(Socket socket, Config.SocketConfig options) throws SocketException {
+        if (options == null) {
+            return;
+        }
+        if (options.reuseAddress != null) {
+            socket.setReuseAddress(options.reuseAddress);
+        }
+        if (options.tcpNoDelay != null) {
+            socket.setTcpNoDelay(options.tcpNoDelay);
+        }
+        if (options.soLinger >= 0) {
+            socket.setSoLinger(true, options.soLinger); // 0: close() sends RST, no TIME_WAIT
+        }
+        if (options.sendBufferSize > 0) {
+            socket.setSendBufferSize(options.sendBufferSize);
+        }
+        if (options.receiveBufferSize > 0) {
+            socket.setReceiveBufferSize(options.receiveBufferSize);
+        }
+    }
+
+    /**
+     * Binds a listening socket with the given accept backlog. SO_REUSEADDR and the receive
+     * buffer size must be set before bind; accepted sockets inherit the buffer size.
+     */
+    public static void bind(ServerSocket serverSocket, int port, int backlog, Config.SocketConfig options)
+            throws IOException {
+        if (options != null) {
+            if (options.reuseAddress != null) {
+                serverSocket.setReuseAddress(options.reuseAddress);
+            }
+            if (options.receiveBufferSize > 0) {
+                serverSocket.setReceiveBufferSize(options.receiveBufferSize);
+            }
+        }
+        serverSocket.bind(new InetSocketAddress(port), backlog);
+    }
+}
@@ -0,0 +1,156 @@
+package com.stresstest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TCP server engine for the stream mode: accepts connections on the whole port range
+ * and consumes everything it receives without answering. With server.sinkPath set each
+ * connection is written to its own file with FileChannel.transferFrom, wrapping around
+ * at SINK_FILE_WRAP; otherwise the data is read into a direct buffer and dropped.
+ */
+public class StreamSink {
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final long TRANSFER_CHUNK = 8L * 1024 * 1024;
+    private static final long SINK_FILE_WRAP = 1024L * 1024 * 1024;
+
+    private final Config.ServerConfig config;
+    private final ExecutorService executor;
+    private final LongAdder connectionCount;
+    private final LongAdder totalBytesReceived;
+    private final ConcurrencyGauge sessions;
+    private final PortCounters portConnections;
+    private final List<ServerSocketChannel> serverChannels = new ArrayList<>();
+    private final AtomicInteger connectionSequence = new AtomicInteger();
+    private volatile boolean running = false;
+
+    public StreamSink(Config.ServerConfig config, ExecutorService executor, LongAdder connectionCount,
+                      LongAdder totalBytesReceived, ConcurrencyGauge sessions, PortCounters portConnections) {
+        this.config = config;
+        this.executor = executor;
+        this.connectionCount = connectionCount;
+        this.totalBytesReceived = totalBytesReceived;
+        this.sessions = sessions;
+        this.portConnections = portConnections;
+    }
+
+    public void start() {
+        running = true;
+        File directory = sinkDirectory();
+        for (int port = config.tcpPortRange.start; port <= config.tcpPortRange.end; port++) {
+            try {
+                ServerSocketChannel serverChannel = ServerSocketChannel.open();
+                SocketTuning.bind(serverChannel.socket(), port, config.tcpBacklog, config.socketOptions);
+                serverChannels.add(serverChannel);
+                int portIndex = port - config.tcpPortRange.start;
+                executor.submit(() -> acceptLoop(serverChannel, portIndex, directory));
+            } catch (IOException e) {
+                AsyncLog.error("Error starting TCP sink on port " + port + ": " + e.getMessage());
+            }
+        }
+        System.out.println("TCP Server (stream sink, " + (directory != null ? "to " + directory : "discard")
+            + ") started on ports " + config.tcpPortRange.start + "-" + config.tcpPortRange.end);
+    }
+
+    public void stop() {
+        running = false;
+        for (ServerSocketChannel serverChannel : serverChannels) {
+            try {
+                serverChannel.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+    }
+
+    private File sinkDirectory() {
+        if (config.sinkPath == null || config.sinkPath.isEmpty()) {
+            return null;
+        }
+        File directory = new File(config.sinkPath);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            System.err.println("Cannot create sink directory " + directory + ", discarding received data");
+            return null;
+        }
+        return directory;
+    }
+
+    private void acceptLoop(ServerSocketChannel serverChannel, int portIndex, File directory) {
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                connectionCount.increment();
+                portConnections.increment(portIndex);
+                SocketTuning.configure(channel.socket(), config.socketOptions);
+                executor.submit(() -> consume(channel, directory));
+            } catch (IOException e) {
+                if (running) {
+                    AsyncLog.warn("Error accepting stream connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void consume(SocketChannel channel, File directory) {
+        sessions.open();
+        try {
+            if (directory != null) {
+                File file = new File(directory, "sink_" + connectionSequence.incrementAndGet() + ".dat");
+                try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    consumeToFile(channel, out);
+                } finally {
+                    file.delete();
+                }
+            } else {
+                ByteBuffer buffer = BufferPool.direct(BUFFER_SIZE);
+                int read;
+                while ((read = channel.read(buffer)) != -1) {
+                    totalBytesReceived.add(read);
+                    buffer.clear();
+                }
+            }
+        } catch (IOException e) {
+            // Connection closed or error - this is expected
+        } finally {
+            sessions.close();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+    }
+
+    private void consumeToFile(SocketChannel channel, FileChannel out) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(1);
+        long position = 0;
+        while (true) {
+            long transferred = out.transferFrom(channel, position, TRANSFER_CHUNK);
+            if (transferred == 0) {
+                // transferFrom returns 0 both for end of stream and for an empty read
+                probe.clear();
+                if (channel.read(probe) == -1) {
+                    return;
+                }
+                probe.flip();
+                transferred = out.write(probe, position);
+            }
+            totalBytesReceived.add(transferred);
+            position += transferred;
+            if (position >= SINK_FILE_WRAP) {
+                position = 0;
+            }
+        }
+    }
+}
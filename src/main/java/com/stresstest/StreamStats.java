@@ -0,0 +1,88 @@
+package com.stresstest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Per-connection results of the TCP stream mode, reported as Gbit/s and as sender
+ * thread CPU seconds per GB, grouped by copy method so zero-copy and heap copying
+ * can be compared side by side.
+ */
+public class StreamStats {
+    private static final double GB = 1024.0 * 1024 * 1024;
+
+    private final Queue<Connection> connections = new ConcurrentLinkedQueue<>();
+
+    static final class Connection {
+        final String method;
+        final long bytes;
+        final long startNanos;
+        final long endNanos;
+        final long cpuNanos; // -1 when thread CPU time is unavailable
+
+        Connection(String method, long bytes, long startNanos, long endNanos, long cpuNanos) {
+            this.method = method;
+            this.bytes = bytes;
+            this.startNanos = startNanos;
+            this.endNanos = endNanos;
+            this.cpuNanos = cpuNanos;
+        }
+    }
+
+    public void add(String method, long bytes, long startNanos, long endNanos, long cpuNanos) {
+        connections.add(new Connection(method, bytes, startNanos, endNanos, cpuNanos));
+    }
+
+    /**
+     * @param processCpuNanos process CPU time over the run (includes an in-process sink), or -1
+     */
+    public void printSummary(long processCpuNanos) {
+        long totalBytes = 0;
+        for (String method : new String[] {"zerocopy", "heap"}) {
+            List<Connection> group = new ArrayList<>();
+            for (Connection connection : connections) {
+                if (connection.method.equals(method)) {
+                    group.add(connection);
+                }
+            }
+            if (group.isEmpty()) {
+                continue;
+            }
+            System.out.println("  " + method + " (" + group.size() + " connections):");
+            long bytes = 0;
+            long cpu = 0;
+            long first = Long.MAX_VALUE;
+            long last = Long.MIN_VALUE;
+            boolean cpuKnown = true;
+            for (int i = 0; i < group.size(); i++) {
+                Connection connection = group.get(i);
+                System.out.println("    Connection " + (i + 1) + ": " + describe(connection.bytes,
+                    connection.endNanos - connection.startNanos, connection.cpuNanos));
+                bytes += connection.bytes;
+                cpu += connection.cpuNanos;
+                cpuKnown &= connection.cpuNanos >= 0;
+                first = Math.min(first, connection.startNanos);
+                last = Math.max(last, connection.endNanos);
+            }
+            System.out.println("    Aggregate: " + describe(bytes, last - first, cpuKnown ? cpu : -1));
+            totalBytes += bytes;
+        }
+        if (processCpuNanos >= 0 && totalBytes > 0) {
+            System.out.printf("  Process CPU: %.3f s per GB sent (all threads, including an in-process sink)%n",
+                processCpuNanos / 1e9 / (totalBytes / GB));
+        }
+    }
+
+    private static String describe(long bytes, long nanos, long cpuNanos) {
+        double seconds = nanos / 1e9;
+        double gigabytes = bytes / GB;
+        String line = String.format("%.2f GB in %.2f s = %.2f Gbit/s", gigabytes, seconds,
+            seconds > 0 ? bytes * 8 / 1e9 / seconds : 0.0);
+        if (cpuNanos >= 0 && bytes > 0) {
+            line += String.format(", sender CPU %.3f s per GB", cpuNanos / 1e9 / gigabytes);
+        }
+        return line;
+    }
+}
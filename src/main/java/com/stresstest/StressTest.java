@@ -1,9 +1,18 @@
 package com.stresstest;
 
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
 
 public class StressTest {
     private final Config config;
@@ -11,16 +20,56 @@ public class StressTest {
     private UDPServer udpServer;
     private FileStressTest fileStressTest;
     private ExecutorService clientExecutor;
-    private final AtomicLong tcpConnectionCount = new AtomicLong(0);
-    private final AtomicLong tcpBytesSent = new AtomicLong(0);
-    private final AtomicLong udpPacketCount = new AtomicLong(0);
-    private final AtomicLong udpBytesSent = new AtomicLong(0);
+    private IntervalReporter intervalReporter;
+    private MetricsServer metricsServer;
+    private ResourceSampler resourceSampler;
+    private LoadScheduler loadScheduler;
+    // Live clients only: a client leaves its set when it finishes its iterations or is stopped
+    private final Set<ClientWorker> tcpClients = new LinkedHashSet<>();
+    private final Set<ClientWorker> udpClients = new LinkedHashSet<>();
+    private final StreamStats streamStats = new StreamStats();
+    private File streamSource;
+    private long startProcessCpu;
+    private int tcpClientSequence;
+    private int udpClientSequence;
+    private TargetRate tcpRate;
+    private TargetRate udpRate;
+    private TargetRate fileRate;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private ResultExporter resultExporter;
+    private Thread runTimer;
+    private String startedAt;
+    // Measured window: snapshots at the end of warm-up and at the start of stop()
+    private volatile Map<String, Long> windowStartCounters;
+    private volatile Map<String, LatencyHistogram> windowStartHistograms;
+    private volatile long windowStartTime;
+    // Deltas of the measured window, set by stop(); null when stopped during warm-up
+    private volatile Map<String, Long> measuredCounters;
+    private volatile Map<String, LatencyHistogram> measuredHistograms;
+    private volatile double measuredSeconds;
+    private final ClientStats tcpStats;
+    private final ClientStats udpStats = new ClientStats("Round-trip time");
+    private PayloadPool payloads;
+    private long seed;
+    private long startGcCount;
+    private long startGcTimeMillis;
+    private long startTime;
 
+    /**
+     * @throws IllegalArgumentException if the config names an unknown mode or has values
+     *         the test cannot run with; checked here, before anything has started
+     */
     public StressTest(Config config) {
+        LoadScheduler.validate(config.load);
+        if (config.fileTest != null && config.fileTest.enabled) {
+            Durability.parse(config.fileTest.durability);
+        }
         this.config = config;
+        this.tcpStats = new ClientStats("Request/response time", config.client != null ? config.client.tcpPortRange : null);
     }
 
     public void start() {
+        AsyncLog.configure(config.log);
         System.out.println("Starting Stress Test Simulator...");
         System.out.println("Config loaded:");
         if (config.networkTest != null) {
@@ -32,18 +81,69 @@ public class StressTest {
             System.out.println("  TCP Client Threads: " + config.client.tcpThreadCount);
             System.out.println("  UDP Client Threads: " + config.client.udpThreadCount);
             System.out.println("  Server Host: " + config.client.serverHost);
+            if (!"echo".equalsIgnoreCase(config.networkTest.tcpMode)) {
+                System.out.println("  TCP Mode: " + config.networkTest.tcpMode);
+            }
             System.out.println("  Iterations per thread: " + config.networkTest.iterations);
+            if (config.networkTest.tcpKeepAlive) {
+                System.out.println("  TCP Keep-Alive: " + config.networkTest.connectionsPerThread
+                    + " connections/thread, pipeline depth " + config.networkTest.pipelineDepth);
+            }
+            if (config.networkTest.tcpTargetRate > 0 || config.networkTest.udpTargetRate > 0) {
+                System.out.println("  Open-loop target rate: TCP " + config.networkTest.tcpTargetRate
+                    + "/s, UDP " + config.networkTest.udpTargetRate + "/s ("
+                    + config.networkTest.arrivalDistribution + " arrivals)");
+            }
         }
         if (config.fileTest != null) {
             System.out.println("  File Test: " + (config.fileTest.enabled ? "Enabled" : "Disabled"));
         }
+        // All worker random streams derive from one master seed; print it so a run can be replayed
+        seed = config.run.seed != 0 ? config.run.seed : new Random().nextLong();
+        System.out.println("  Seed: " + seed);
+        System.out.println("  Thread mode: " + WorkerThreads.configure(config.run.threadMode));
         System.out.println();
 
+        // Every worker sends and writes slices of one pre-generated random region
+        int maxPayloadSize = 0;
+        if (config.networkTest != null && config.networkTest.enabled) {
+            maxPayloadSize = config.networkTest.dataSize;
+        }
+        if (config.fileTest != null && config.fileTest.enabled) {
+            maxPayloadSize = Math.max(maxPayloadSize, config.fileTest.maxFileSize);
+            if ("block".equalsIgnoreCase(config.fileTest.workload)) {
+                maxPayloadSize = Math.max(maxPayloadSize, BlockIOWorkload.maxBlockSize(config.fileTest));
+            }
+            maxPayloadSize = Math.max(maxPayloadSize, config.fileTest.metaFileSize);
+            if (config.fileTest.prepopulateFiles > 0) {
+                maxPayloadSize = Math.max(maxPayloadSize, FileStressTest.prepopulateSizes(config.fileTest).max());
+            }
+        }
+        payloads = new PayloadPool(maxPayloadSize, SeededRandom.forWorker(seed, "payload", 0));
+        startGcCount = JvmStats.gcCount();
+        startGcTimeMillis = JvmStats.gcTimeMillis();
+        startProcessCpu = JvmStats.processCpuNanos();
+        startTime = System.nanoTime();
+        startedAt = Instant.now().toString();
+
+        // Open-loop rates; under rate control the load scheduler moves them, so every workload follows a schedule
+        boolean rateControl = !"fixed".equalsIgnoreCase(config.load.mode) && "rate".equalsIgnoreCase(config.load.control);
+        if (config.networkTest != null && config.networkTest.enabled) {
+            tcpRate = new TargetRate(config.networkTest.tcpTargetRate, config.client.tcpThreadCount,
+                rateControl || config.networkTest.tcpTargetRate > 0);
+            udpRate = new TargetRate(config.networkTest.udpTargetRate, config.client.udpThreadCount,
+                rateControl || config.networkTest.udpTargetRate > 0);
+        }
+        if (config.fileTest != null && config.fileTest.enabled) {
+            fileRate = new TargetRate(config.fileTest.targetRate, config.fileTest.threadCount,
+                rateControl || config.fileTest.targetRate > 0);
+        }
+
         // Start network test servers and clients only if network test is enabled
         if (config.networkTest != null && config.networkTest.enabled) {
             // Start servers
             if (config.server.tcpEnabled) {
-                tcpServer = new TCPServer(config.server);
+                tcpServer = new TCPServer(config.server, isStreamMode());
                 tcpServer.start();
             }
 
@@ -60,22 +160,27 @@ public class StressTest {
             }
 
             // Start clients
-            clientExecutor = Executors.newCachedThreadPool();
+            clientExecutor = WorkerThreads.newExecutor("client");
+
+            if (config.client.tcpEnabled && isStreamMode()) {
+                try {
+                    streamSource = TCPStreamClient.prepareSource(config.networkTest, payloads);
+                    System.out.println("Streaming " + streamSource.length() + " bytes x " + config.networkTest.iterations
+                        + " per connection (" + config.networkTest.streamCopy + ")");
+                } catch (IOException e) {
+                    System.err.println("Cannot prepare stream source, TCP clients disabled: " + e.getMessage());
+                    config.client.tcpEnabled = false;
+                }
+            }
 
             if (config.client.tcpEnabled) {
                 System.out.println("Starting " + config.client.tcpThreadCount + " TCP client threads...");
-                for (int i = 0; i < config.client.tcpThreadCount; i++) {
-                    clientExecutor.submit(new TCPClient(config.client, config.networkTest, 
-                        tcpConnectionCount, tcpBytesSent));
-                }
+                resizeTcpClients(config.client.tcpThreadCount);
             }
 
             if (config.client.udpEnabled) {
                 System.out.println("Starting " + config.client.udpThreadCount + " UDP client threads...");
-                for (int i = 0; i < config.client.udpThreadCount; i++) {
-                    clientExecutor.submit(new UDPClient(config.client, config.networkTest, 
-                        udpPacketCount, udpBytesSent));
-                }
+                resizeUdpClients(config.client.udpThreadCount);
             }
         } else {
             System.out.println("Network test is disabled. Skipping network test servers and clients.");
@@ -83,21 +188,77 @@ public class StressTest {
 
         // Start file stress test
         if (config.fileTest != null && config.fileTest.enabled) {
-            fileStressTest = new FileStressTest(config.fileTest);
+            fileStressTest = new FileStressTest(config.fileTest, payloads, seed, fileRate);
             fileStressTest.start();
         }
 
         if (config.networkTest != null && config.networkTest.enabled) {
             System.out.println("All network test clients started.");
         }
+        if (config.run.resultsDir != null && !config.run.resultsDir.isEmpty()) {
+            try {
+                resultExporter = new ResultExporter(config.run.resultsDir);
+            } catch (IOException e) {
+                System.err.println("Results will not be exported: " + e.getMessage());
+            }
+        }
+        if (config.resources != null && config.resources.enabled) {
+            resourceSampler = new ResourceSampler(config.resources);
+        }
+        // The time series and resource samples are taken every second even when nothing is printed
+        if (config.run.reportIntervalSeconds > 0 || resultExporter != null || resourceSampler != null) {
+            boolean print = config.run.reportIntervalSeconds > 0;
+            intervalReporter = new IntervalReporter(this::collectCounters,
+                print ? config.run.reportIntervalSeconds : 1, print, resultExporter, resourceSampler);
+            intervalReporter.start();
+        }
+        if (config.run.metricsPort > 0) {
+            metricsServer = new MetricsServer(config.run.metricsPort, this);
+            try {
+                metricsServer.start();
+            } catch (IOException e) {
+                System.err.println("Cannot start metrics endpoint on port " + config.run.metricsPort + ": " + e.getMessage());
+                metricsServer = null;
+            }
+        }
+        startRunTimer();
+        if (!"fixed".equalsIgnoreCase(config.load.mode)) {
+            loadScheduler = new LoadScheduler(config.load, this);
+            loadScheduler.start();
+        }
+
         System.out.println("Stress test running...");
         System.out.println("Press Ctrl+C to stop.");
     }
 
     public void stop() {
+        // Close the measured window before workers wind down, so the drain is not measured
+        Map<String, Long> windowEndCounters = collectCounters();
+        Map<String, LatencyHistogram> windowEndHistograms = collectHistograms();
+        long windowEndTime = System.nanoTime();
+        if (windowStartCounters != null) {
+            measuredCounters = since(windowEndCounters, windowStartCounters);
+            measuredHistograms = sinceHistograms(windowEndHistograms, windowStartHistograms);
+            measuredSeconds = (windowEndTime - windowStartTime) / 1_000_000_000.0;
+        }
+        if (runTimer != null) {
+            runTimer.interrupt();
+        }
+
         System.out.println("\nStopping stress test...");
+
+        if (intervalReporter != null) {
+            intervalReporter.stop();
+        }
+        if (loadScheduler != null) {
+            loadScheduler.stop();
+        }
         
         if (clientExecutor != null) {
+            synchronized (this) {
+                resizeTcpClients(0);
+                resizeUdpClients(0);
+            }
             clientExecutor.shutdown();
             try {
                 if (!clientExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
@@ -121,7 +282,258 @@ public class StressTest {
             fileStressTest.stop();
         }
 
+        // Let the log writer catch up so queued messages do not interleave with the statistics
+        AsyncLog.flush();
         printStatistics();
+        reportMeasuredWindow(windowEndCounters, windowEndHistograms, windowEndTime);
+        if (metricsServer != null) {
+            metricsServer.stop();
+        }
+    }
+
+    // Ends warm-up after run.warmupSeconds and the run after run.durationSeconds more
+    private void startRunTimer() {
+        final int warmupSeconds = config.run.warmupSeconds;
+        final int durationSeconds = config.run.durationSeconds;
+        if (warmupSeconds <= 0) {
+            startMeasuredWindow();
+        } else {
+            System.out.println("Warm-up: the first " + warmupSeconds + "s are excluded from the measured results");
+            if (resultExporter != null) {
+                resultExporter.setPhase("warmup");
+            }
+        }
+        if (warmupSeconds <= 0 && durationSeconds <= 0) {
+            return;
+        }
+        runTimer = new Thread(() -> {
+            try {
+                if (warmupSeconds > 0) {
+                    Thread.sleep(warmupSeconds * 1000L);
+                    startMeasuredWindow();
+                    System.out.println("[run] Warm-up finished, measuring"
+                        + (durationSeconds > 0 ? " for " + durationSeconds + "s" : ""));
+                }
+                if (durationSeconds > 0) {
+                    Thread.sleep(durationSeconds * 1000L);
+                    finished.countDown();
+                }
+            } catch (InterruptedException e) {
+                // Stopped early
+            }
+        }, "run-timer");
+        runTimer.setDaemon(true);
+        runTimer.start();
+    }
+
+    private void startMeasuredWindow() {
+        windowStartHistograms = collectHistograms();
+        windowStartCounters = collectCounters();
+        windowStartTime = System.nanoTime();
+        if (resultExporter != null) {
+            resultExporter.setPhase("measure");
+        }
+    }
+
+    /**
+     * Counter deltas of the measured window (warm-up and shutdown drain excluded),
+     * available once stop() has run; null if the test was stopped during warm-up.
+     */
+    public Map<String, Long> getMeasuredCounters() {
+        return measuredCounters;
+    }
+
+    /**
+     * Histogram deltas of the measured window, as for {@link #getMeasuredCounters()}.
+     */
+    public Map<String, LatencyHistogram> getMeasuredHistograms() {
+        return measuredHistograms;
+    }
+
+    public double getMeasuredSeconds() {
+        return measuredSeconds;
+    }
+
+    private static Map<String, Long> since(Map<String, Long> end, Map<String, Long> start) {
+        Map<String, Long> delta = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : end.entrySet()) {
+            delta.put(entry.getKey(), entry.getValue() - start.getOrDefault(entry.getKey(), 0L));
+        }
+        return delta;
+    }
+
+    private static Map<String, LatencyHistogram> sinceHistograms(Map<String, LatencyHistogram> end,
+                                                                 Map<String, LatencyHistogram> start) {
+        Map<String, LatencyHistogram> delta = new LinkedHashMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : end.entrySet()) {
+            LatencyHistogram earlier = start.get(entry.getKey());
+            delta.put(entry.getKey(), earlier != null ? entry.getValue().since(earlier) : entry.getValue());
+        }
+        return delta;
+    }
+
+    private void reportMeasuredWindow(Map<String, Long> endCounters, Map<String, LatencyHistogram> endHistograms,
+                                      long endTime) {
+        if (windowStartCounters == null) {
+            System.out.println("\nStopped during warm-up: nothing was measured.");
+            if (resultExporter != null) {
+                resultExporter.close();
+            }
+            return;
+        }
+        RunSummary summary = RunSummary.between(windowStartCounters, windowStartHistograms,
+            endCounters, endHistograms, (endTime - windowStartTime) / 1_000_000_000.0);
+        summary.startedAt = startedAt;
+        summary.seed = seed;
+        summary.warmupSeconds = config.run.warmupSeconds;
+
+        // The totals above already cover the whole run when there is no warm-up to leave out
+        if (config.run.warmupSeconds > 0) {
+            System.out.printf("%n=== Measured Window (%.1fs after %ds warm-up) ===%n",
+                summary.measuredSeconds, config.run.warmupSeconds);
+            System.out.println("Throughput:");
+            for (Map.Entry<String, Long> entry : summary.counters.entrySet()) {
+                System.out.printf("  %s: %d (%.1f/s)%n", entry.getKey(), entry.getValue(),
+                    summary.rates.get(entry.getKey()));
+            }
+            System.out.println("Latency:");
+            for (Map.Entry<String, LatencyHistogram> entry : endHistograms.entrySet()) {
+                LatencyHistogram earlier = windowStartHistograms.get(entry.getKey());
+                LatencyTracker.printSummary(entry.getKey(),
+                    earlier != null ? entry.getValue().since(earlier) : entry.getValue());
+            }
+        }
+
+        if (resultExporter != null) {
+            resultExporter.writeSummary(summary);
+            resultExporter.close();
+            System.out.println("\nResults written to " + resultExporter.getDirectory());
+        }
+    }
+
+    /**
+     * Sets the number of TCP and UDP client threads and file workers of every enabled
+     * workload; used by the load scheduler under concurrency control.
+     */
+    public synchronized void setConcurrency(int workers) {
+        if (config.networkTest != null && config.networkTest.enabled) {
+            if (config.client.tcpEnabled) {
+                resizeTcpClients(workers);
+            }
+            if (config.client.udpEnabled) {
+                resizeUdpClients(workers);
+            }
+        }
+        if (fileStressTest != null) {
+            fileStressTest.setConcurrency(workers);
+        }
+    }
+
+    /**
+     * Sets the client or worker count of one workload ("tcp", "udp" or "file") if it is
+     * enabled; used by the capacity search, which raises each workload on its own.
+     */
+    public synchronized void setConcurrency(String workload, int workers) {
+        boolean network = config.networkTest != null && config.networkTest.enabled;
+        if ("tcp".equals(workload) && network && config.client.tcpEnabled) {
+            resizeTcpClients(workers);
+        } else if ("udp".equals(workload) && network && config.client.udpEnabled) {
+            resizeUdpClients(workers);
+        } else if ("file".equals(workload) && fileStressTest != null) {
+            fileStressTest.setConcurrency(workers);
+        }
+    }
+
+    /**
+     * Sets the target rate of one workload ("tcp", "udp" or "file") if it is enabled.
+     */
+    public void setTargetRate(String workload, double perSecond) {
+        TargetRate rate = "tcp".equals(workload) ? tcpRate : "udp".equals(workload) ? udpRate
+            : "file".equals(workload) ? fileRate : null;
+        if (rate != null) {
+            rate.set(perSecond);
+        }
+    }
+
+    /**
+     * Sets the aggregate target rate (requests, packets or file operations per second)
+     * of every enabled workload; used by the load scheduler under rate control.
+     */
+    public void setTargetRate(double perSecond) {
+        for (TargetRate rate : new TargetRate[] {tcpRate, udpRate, fileRate}) {
+            if (rate != null) {
+                rate.set(perSecond);
+            }
+        }
+    }
+
+    /**
+     * Blocks until run.durationSeconds has elapsed after warm-up or the configured load
+     * schedule has finished, whichever comes first; without either, until interrupted.
+     */
+    public void awaitFinished() throws InterruptedException {
+        finished.await();
+    }
+
+    void loadScheduleFinished() {
+        finished.countDown();
+    }
+
+    // New clients take the next seeded stream; removed clients finish their current request.
+    // Clients that completed their iterations no longer count, so a resize tops them up.
+    private synchronized void resizeTcpClients(int count) {
+        while (tcpClients.size() < count) {
+            int index = tcpClientSequence++;
+            Random random = SeededRandom.forWorker(seed, "tcp", index);
+            ClientWorker client;
+            if (isStreamMode()) {
+                // "both" alternates the copy method by thread so the two are measured side by side
+                String copy = config.networkTest.streamCopy;
+                boolean zeroCopy = "both".equalsIgnoreCase(copy) ? index % 2 == 0 : !"heap".equalsIgnoreCase(copy);
+                client = new TCPStreamClient(config.client, config.networkTest, tcpStats, streamStats,
+                    streamSource, zeroCopy, random);
+            } else if ("connect".equalsIgnoreCase(config.networkTest.tcpMode)) {
+                client = new TCPConnectClient(config.client, config.networkTest, tcpStats, payloads, random, tcpRate);
+            } else {
+                client = new TCPClient(config.client, config.networkTest, tcpStats, payloads, random, tcpRate);
+            }
+            submitClient(tcpClients, client);
+        }
+        shrink(tcpClients, count);
+    }
+
+    private synchronized void resizeUdpClients(int count) {
+        while (udpClients.size() < count) {
+            ClientWorker client = new UDPClient(config.client, config.networkTest, udpStats, payloads,
+                SeededRandom.forWorker(seed, "udp", udpClientSequence++), udpRate);
+            submitClient(udpClients, client);
+        }
+        shrink(udpClients, count);
+    }
+
+    private void submitClient(Set<ClientWorker> live, ClientWorker client) {
+        live.add(client);
+        clientExecutor.submit(() -> {
+            try {
+                client.run();
+            } finally {
+                synchronized (this) {
+                    live.remove(client);
+                }
+            }
+        });
+    }
+
+    private static void shrink(Set<ClientWorker> live, int count) {
+        Iterator<ClientWorker> clients = live.iterator();
+        while (live.size() > count) {
+            clients.next().stop();
+            clients.remove();
+        }
+    }
+
+    private boolean isStreamMode() {
+        return config.networkTest != null && "stream".equalsIgnoreCase(config.networkTest.tcpMode);
     }
 
     private void printStatistics() {
@@ -131,25 +543,46 @@ public class StressTest {
             if (config.server.tcpEnabled && tcpServer != null) {
                 System.out.println("TCP Server:");
                 System.out.println("  Connections handled: " + tcpServer.getConnectionCount());
+                System.out.println("  Peak concurrent connections: " + tcpServer.getPeakSessions());
                 System.out.println("  Total bytes received: " + tcpServer.getTotalBytesReceived());
             }
             
             if (config.client.tcpEnabled) {
                 System.out.println("TCP Client:");
-                System.out.println("  Connections made: " + tcpConnectionCount.get());
-                System.out.println("  Total bytes sent: " + tcpBytesSent.get());
+                System.out.println("  Connections made: " + tcpStats.connections.sum());
+                if ("connect".equalsIgnoreCase(config.networkTest.tcpMode)) {
+                    double seconds = (System.nanoTime() - startTime) / 1_000_000_000.0;
+                    System.out.printf("  Connect rate: %.1f/s%n", tcpStats.connections.sum() / seconds);
+                }
+                System.out.println("  Peak concurrent connections: " + tcpStats.sessions.getPeak());
+                System.out.println("  Requests completed: " + tcpStats.requests.sum());
+                System.out.println("  Total bytes sent: " + tcpStats.bytes.sum());
+                System.out.println("  Errors: " + tcpStats.errors.sum());
+                tcpStats.connectFailures.printSummary();
+                tcpStats.connectLatency.printSummary();
+                tcpStats.requestLatency.printSummary();
+                if (isStreamMode()) {
+                    System.out.println("TCP Stream:");
+                    long processCpu = JvmStats.processCpuNanos();
+                    streamStats.printSummary(processCpu >= 0 && startProcessCpu >= 0 ? processCpu - startProcessCpu : -1);
+                }
             }
             
             if (config.server.udpEnabled && udpServer != null) {
                 System.out.println("UDP Server:");
                 System.out.println("  Packets received: " + udpServer.getPacketCount());
                 System.out.println("  Total bytes received: " + udpServer.getTotalBytesReceived());
+                udpServer.printPortStatistics();
             }
             
             if (config.client.udpEnabled) {
                 System.out.println("UDP Client:");
-                System.out.println("  Packets sent: " + udpPacketCount.get());
-                System.out.println("  Total bytes sent: " + udpBytesSent.get());
+                System.out.println("  Packets sent: " + udpStats.requests.sum());
+                System.out.println("  Peak concurrent sockets: " + udpStats.sessions.getPeak());
+                System.out.println("  Total bytes sent: " + udpStats.bytes.sum());
+                System.out.println("  Echoes received: " + udpStats.responses.sum());
+                System.out.println("  Errors/timeouts: " + udpStats.errors.sum());
+                udpStats.requestLatency.printSummary();
             }
         }
         
@@ -159,6 +592,122 @@ public class StressTest {
             }
             fileStressTest.printStatistics();
         }
+
+        System.out.println();
+        printJvmStatistics();
+        if (resourceSampler != null) {
+            resourceSampler.printSummary();
+        }
+        AsyncLog.printSummary();
     }
-}
 
+    private void printJvmStatistics() {
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        long gcTime = JvmStats.gcTimeMillis() - startGcTimeMillis;
+        System.out.println("JVM:");
+        System.out.println("  GC collections: " + (JvmStats.gcCount() - startGcCount));
+        System.out.printf("  GC time: %d ms (%.2f%% of run)%n", gcTime,
+            elapsedMillis > 0 ? gcTime * 100.0 / elapsedMillis : 0.0);
+    }
+
+    public Map<String, Long> collectCounters() {
+        Map<String, Long> counters = new LinkedHashMap<>();
+        if (config.networkTest != null && config.networkTest.enabled) {
+            if (config.client.tcpEnabled) {
+                counters.put("tcp.client.connections", tcpStats.connections.sum());
+                counters.put("tcp.client.requests", tcpStats.requests.sum());
+                counters.put("tcp.client.bytes", tcpStats.bytes.sum());
+                counters.put("tcp.client.errors", tcpStats.errors.sum());
+                tcpStats.connectFailures.collectCounters("tcp.client.connect.", counters);
+            }
+            if (tcpServer != null) {
+                counters.put("tcp.server.connections", tcpServer.getConnectionCount());
+                counters.put("tcp.server.bytes", tcpServer.getTotalBytesReceived());
+            }
+            if (config.client.udpEnabled) {
+                counters.put("udp.client.packets", udpStats.requests.sum());
+                counters.put("udp.client.echoes", udpStats.responses.sum());
+                counters.put("udp.client.bytes", udpStats.bytes.sum());
+                counters.put("udp.client.errors", udpStats.errors.sum());
+            }
+            if (udpServer != null) {
+                counters.put("udp.server.packets", udpServer.getPacketCount());
+                counters.put("udp.server.bytes", udpServer.getTotalBytesReceived());
+            }
+        }
+        if (fileStressTest != null) {
+            fileStressTest.collectCounters(counters);
+        }
+        if (AsyncLog.isEnabled(AsyncLog.Level.DEBUG)) {
+            AsyncLog.collectCounters(counters);
+        }
+        return counters;
+    }
+
+    /**
+     * Per-port breakdown of some counters, keyed like the counters: port -> count.
+     */
+    public Map<String, Map<Integer, Long>> collectPortCounters() {
+        Map<String, Map<Integer, Long>> counters = new LinkedHashMap<>();
+        if (config.networkTest != null && config.networkTest.enabled) {
+            if (config.client.tcpEnabled) {
+                tcpStats.connectFailures.collectPortCounters("tcp.client.connect.", counters);
+            }
+            if (tcpServer != null) {
+                Map<Integer, Long> ports = new TreeMap<>();
+                for (int port = config.server.tcpPortRange.start; port <= config.server.tcpPortRange.end; port++) {
+                    ports.put(port, tcpServer.getPortConnectionCount(port));
+                }
+                counters.put("tcp.server.connections", ports);
+            }
+            if (udpServer != null) {
+                Map<Integer, Long> ports = new TreeMap<>();
+                for (int port = config.server.udpPortRange.start; port <= config.server.udpPortRange.end; port++) {
+                    ports.put(port, udpServer.getPortPacketCount(port));
+                }
+                counters.put("udp.server.packets", ports);
+            }
+        }
+        return counters;
+    }
+
+    /**
+     * Current values that go up and down, such as open sessions.
+     */
+    public Map<String, Long> collectGauges() {
+        Map<String, Long> gauges = new LinkedHashMap<>();
+        gauges.put("run.uptimeSeconds", TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startTime));
+        if (config.networkTest != null && config.networkTest.enabled) {
+            if (config.client.tcpEnabled) {
+                gauges.put("tcp.client.sessions", (long) tcpStats.sessions.getActive());
+            }
+            if (tcpServer != null) {
+                gauges.put("tcp.server.sessions", (long) tcpServer.getActiveSessions());
+            }
+            if (config.client.udpEnabled) {
+                gauges.put("udp.client.sessions", (long) udpStats.sessions.getActive());
+            }
+        }
+        return gauges;
+    }
+
+    /**
+     * Merged snapshots of every latency histogram, keyed like the counters.
+     */
+    public Map<String, LatencyHistogram> collectHistograms() {
+        Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+        if (config.networkTest != null && config.networkTest.enabled) {
+            if (config.client.tcpEnabled) {
+                histograms.put("tcp.client.connect", tcpStats.connectLatency.snapshot());
+                histograms.put("tcp.client.request", tcpStats.requestLatency.snapshot());
+            }
+            if (config.client.udpEnabled) {
+                histograms.put("udp.client.rtt", udpStats.requestLatency.snapshot());
+            }
+        }
+        if (fileStressTest != null) {
+            fileStressTest.collectHistograms(histograms);
+        }
+        return histograms;
+    }
+}
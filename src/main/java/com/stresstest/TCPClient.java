@@ -1,66 +1,115 @@
 package com.stresstest;
 
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.util.Random;
-import java.util.concurrent.atomic.AtomicLong;
 
-public class TCPClient implements Runnable {
+public class TCPClient implements ClientWorker {
     private final Config.ClientConfig config;
     private final Config.TestConfig testConfig;
-    private final AtomicLong connectionCount;
-    private final AtomicLong totalBytesSent;
-    private final Random random = new Random();
+    private final ClientStats stats;
+    private final PayloadPool payloads;
+    private final LatencyTracker connectLatency;
+    private final LatencyTracker requestLatency;
+    private final Random random;
+    private final AccessDistribution portAccess;
+    private final RateSchedule schedule;
+    private volatile boolean running = true;
 
     public TCPClient(Config.ClientConfig config, Config.TestConfig testConfig,
-                     AtomicLong connectionCount, AtomicLong totalBytesSent) {
+                     ClientStats stats, PayloadPool payloads, Random random, TargetRate rate) {
         this.config = config;
         this.testConfig = testConfig;
-        this.connectionCount = connectionCount;
-        this.totalBytesSent = totalBytesSent;
+        this.stats = stats;
+        this.payloads = payloads;
+        this.random = random;
+        this.portAccess = AccessDistribution.create(testConfig.portAccess);
+        this.connectLatency = stats.connectLatency;
+        this.requestLatency = stats.requestLatency;
+        this.schedule = RateSchedule.forThread(rate, testConfig.arrivalDistribution, random);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
     }
 
     @Override
     public void run() {
-        byte[] data = new byte[testConfig.dataSize];
-        random.nextBytes(data);
+        byte[] data = payloads.region();
+        byte[] buffer = BufferPool.heap(testConfig.dataSize);
 
-        for (int i = 0; i < testConfig.iterations; i++) {
-            int port = config.tcpPortRange.start + 
-                      random.nextInt(config.tcpPortRange.end - config.tcpPortRange.start + 1);
+        if (testConfig.tcpKeepAlive) {
+            runKeepAlive(data, buffer);
+            return;
+        }
+
+        for (int i = 0; i < testConfig.iterations && running; i++) {
+            long intended;
+            try {
+                intended = nextSendTime();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            int port = nextPort();
             
-            // Retry connection on failure with 1 second delay
+            // Retry connection on failure after connectRetryMillis
             boolean connected = false;
-            while (!connected) {
-                try (Socket socket = new Socket(config.serverHost, port)) {
+            while (!connected && running) {
+                long connectStart = System.nanoTime();
+                try (Socket socket = new Socket()) {
+                    connect(socket, port);
                     connected = true;
-                    connectionCount.incrementAndGet();
-                    
+                    stats.connections.increment();
                     InputStream input = socket.getInputStream();
                     OutputStream output = socket.getOutputStream();
-                    
-                    // Send data
-                    output.write(data);
-                    output.flush();
-                    
-                    // Receive echo
-                    byte[] buffer = new byte[testConfig.dataSize];
-                    int bytesRead = input.read(buffer);
-                    if (bytesRead > 0) {
-                        totalBytesSent.addAndGet(bytesRead);
+                    stats.sessions.open();
+                    try {
+                        long requestStart = System.nanoTime();
+                        connectLatency.record(requestStart - connectStart);
+                        if (schedule != null) {
+                            requestStart = intended; // open-loop: include connect and any backlog
+                        }
+
+                        // Send data
+                        output.write(data, payloads.offsetFor(testConfig.dataSize, random), testConfig.dataSize);
+                        output.flush();
+
+                        // Receive the whole echo; it may arrive split over several segments
+                        int offset = 0;
+                        while (offset < testConfig.dataSize) {
+                            int bytesRead = input.read(buffer, offset, testConfig.dataSize - offset);
+                            if (bytesRead == -1) {
+                                throw new EOFException("Connection closed by server");
+                            }
+                            offset += bytesRead;
+                        }
+                        stats.bytes.add(offset);
+                        stats.requests.increment();
+                        requestLatency.record(System.nanoTime() - requestStart);
+
+                        socket.close();
+                    } finally {
+                        stats.sessions.close();
                     }
                     
-                    socket.close();
-                    
                     if (testConfig.delayBetweenConnections > 0) {
                         Thread.sleep(testConfig.delayBetweenConnections);
                     }
                 } catch (IOException e) {
-                    // Connection failed - retry after 1 second
+                    // Connection or exchange failed - retry after connectRetryMillis
+                    stats.errors.increment();
+                    if (!connected) {
+                        stats.connectFailures.record(port, e);
+                    }
                     try {
-                        Thread.sleep(1000);
+                        Thread.sleep(config.connectRetryMillis);
                     } catch (InterruptedException ie) {
                         Thread.currentThread().interrupt();
                         return;
@@ -71,7 +120,7 @@ public class TCPClient implements Runnable {
                 }
             }
             
-            if (testConfig.delayBetweenIterations > 0 && i < testConfig.iterations - 1) {
+            if (schedule == null && testConfig.delayBetweenIterations > 0 && i < testConfig.iterations - 1) {
                 try {
                     Thread.sleep(testConfig.delayBetweenIterations);
                 } catch (InterruptedException e) {
@@ -81,5 +130,203 @@ public class TCPClient implements Runnable {
             }
         }
     }
-}
 
+    // Keep-alive mode: each iteration is one request on one of the thread's long-lived
+    // connections (round-robin). Up to pipelineDepth requests stay outstanding per
+    // connection before the oldest echo is read back. In open-loop mode every request is
+    // flushed at its scheduled time and its echo read before the next slot.
+    private void runKeepAlive(byte[] data, byte[] response) {
+        Connection[] connections = new Connection[Math.max(1, testConfig.connectionsPerThread)];
+        int depth = Math.max(1, testConfig.pipelineDepth);
+
+        try {
+            for (int i = 0; i < testConfig.iterations && running; i++) {
+                long intended;
+                try {
+                    intended = nextSendTime();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+
+                int slot = i % connections.length;
+                if (connections[slot] == null) {
+                    connections[slot] = connect();
+                    if (connections[slot] == null) {
+                        return; // interrupted or stopped while retrying
+                    }
+                }
+
+                Connection connection = connections[slot];
+                try {
+                    connection.output.write(data, payloads.offsetFor(testConfig.dataSize, random),
+                        testConfig.dataSize);
+                    connection.markSent(intended);
+
+                    if (schedule != null || connection.outstanding >= depth) {
+                        connection.output.flush();
+                        receiveEcho(connection, response);
+                    }
+
+                    if (testConfig.requestsPerConnection > 0
+                            && connection.sent >= testConfig.requestsPerConnection) {
+                        drain(connection, response);
+                        connection.close();
+                        connections[slot] = null;
+                    }
+                } catch (IOException e) {
+                    // Server closed or reset the connection - reconnect on next use
+                    stats.errors.increment();
+                    connection.close();
+                    connections[slot] = null;
+                }
+
+                if (schedule == null && testConfig.delayBetweenIterations > 0 && i < testConfig.iterations - 1) {
+                    try {
+                        Thread.sleep(testConfig.delayBetweenIterations);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+
+            for (Connection connection : connections) {
+                if (connection != null) {
+                    try {
+                        drain(connection, response);
+                    } catch (IOException e) {
+                        // Ignore - closing anyway
+                    }
+                }
+            }
+        } finally {
+            for (Connection connection : connections) {
+                if (connection != null) {
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    private Connection connect() {
+        // Retry connection on failure after connectRetryMillis
+        while (running) {
+            int port = nextPort();
+            Socket socket = new Socket();
+            try {
+                long connectStart = System.nanoTime();
+                connect(socket, port);
+                stats.connections.increment();
+                connectLatency.record(System.nanoTime() - connectStart);
+                // Counted once the connection exists; Connection.close() is what balances it
+                Connection connection = new Connection(socket, Math.max(1, testConfig.pipelineDepth), stats.sessions);
+                stats.sessions.open();
+                return connection;
+            } catch (IOException e) {
+                stats.errors.increment();
+                stats.connectFailures.record(port, e);
+                closeQuietly(socket);
+                try {
+                    Thread.sleep(config.connectRetryMillis);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void connect(Socket socket, int port) throws IOException {
+        SocketTuning.configure(socket, config.socketOptions);
+        socket.connect(new InetSocketAddress(config.serverHost, port), config.connectTimeoutMillis);
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+
+    private void drain(Connection connection, byte[] response) throws IOException {
+        connection.output.flush();
+        while (connection.outstanding > 0) {
+            receiveEcho(connection, response);
+        }
+    }
+
+    private void receiveEcho(Connection connection, byte[] response) throws IOException {
+        int offset = 0;
+        while (offset < testConfig.dataSize) {
+            int bytesRead = connection.input.read(response, offset, testConfig.dataSize - offset);
+            if (bytesRead == -1) {
+                throw new EOFException("Connection closed by server");
+            }
+            offset += bytesRead;
+        }
+        long sendTime = connection.markReceived();
+        stats.bytes.add(testConfig.dataSize);
+        stats.requests.increment();
+        requestLatency.record(System.nanoTime() - sendTime);
+    }
+
+    // Intended send time: the schedule slot in open-loop mode, otherwise now
+    private long nextSendTime() throws InterruptedException {
+        return schedule != null ? schedule.awaitNext() : System.nanoTime();
+    }
+
+    private int nextPort() {
+        return config.tcpPortRange.start +
+               portAccess.next(random, config.tcpPortRange.end - config.tcpPortRange.start + 1);
+    }
+
+    private static final class Connection {
+        final Socket socket;
+        final InputStream input;
+        final OutputStream output;
+        final long[] sendTimes;
+        final ConcurrencyGauge sessions;
+        boolean closed;
+        int head;
+        int outstanding;
+        long sent;
+
+        Connection(Socket socket, int depth, ConcurrencyGauge sessions) throws IOException {
+            this.socket = socket;
+            this.sessions = sessions;
+            this.input = socket.getInputStream();
+            // Buffered so a pipelined burst goes out in as few segments as possible
+            this.output = new BufferedOutputStream(socket.getOutputStream(), 65536);
+            this.sendTimes = new long[depth];
+        }
+
+        void markSent(long sendTime) {
+            sendTimes[(head + outstanding) % sendTimes.length] = sendTime;
+            outstanding++;
+            sent++;
+        }
+
+        long markReceived() {
+            long sendTime = sendTimes[head];
+            head = (head + 1) % sendTimes.length;
+            outstanding--;
+            return sendTime;
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            sessions.close();
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+    }
+}
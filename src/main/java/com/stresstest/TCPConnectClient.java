@@ -0,0 +1,120 @@
+package com.stresstest;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Random;
+
+/**
+ * Connection storm client (networkTest.tcpMode "connect"): every iteration opens a new
+ * connection, optionally exchanges one dataSize echo to catch resets of connections
+ * the server accepted too late, and closes it. Failures are not retried but classified
+ * per port, so the connect rate stays at the offered load while the server saturates.
+ */
+public class TCPConnectClient implements ClientWorker {
+    private final Config.ClientConfig config;
+    private final Config.TestConfig testConfig;
+    private final ClientStats stats;
+    private final PayloadPool payloads;
+    private final LatencyTracker connectLatency;
+    private final LatencyTracker requestLatency;
+    private final Random random;
+    private final AccessDistribution portAccess;
+    private final RateSchedule schedule;
+    private volatile boolean running = true;
+
+    public TCPConnectClient(Config.ClientConfig config, Config.TestConfig testConfig, ClientStats stats,
+                            PayloadPool payloads, Random random, TargetRate rate) {
+        this.config = config;
+        this.testConfig = testConfig;
+        this.stats = stats;
+        this.payloads = payloads;
+        this.random = random;
+        this.portAccess = AccessDistribution.create(testConfig.portAccess);
+        this.connectLatency = stats.connectLatency;
+        this.requestLatency = stats.requestLatency;
+        this.schedule = RateSchedule.forThread(rate, testConfig.arrivalDistribution, random);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public void run() {
+        InetAddress server;
+        try {
+            server = InetAddress.getByName(config.serverHost);
+        } catch (IOException e) {
+            System.err.println("Cannot resolve " + config.serverHost + ": " + e.getMessage());
+            return;
+        }
+        byte[] data = payloads.region();
+        byte[] response = BufferPool.heap(testConfig.dataSize);
+
+        for (int i = 0; i < testConfig.iterations && running; i++) {
+            long intended;
+            try {
+                intended = schedule != null ? schedule.awaitNext() : System.nanoTime();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            int port = config.tcpPortRange.start +
+                portAccess.next(random, config.tcpPortRange.end - config.tcpPortRange.start + 1);
+
+            boolean connected = false;
+            try (Socket socket = new Socket()) {
+                SocketTuning.configure(socket, config.socketOptions);
+                socket.connect(new InetSocketAddress(server, port), config.connectTimeoutMillis);
+                connected = true;
+                long now = System.nanoTime();
+                connectLatency.record(now - intended);
+                stats.connections.increment();
+                stats.sessions.open();
+                try {
+                    if (testConfig.dataSize > 0) {
+                        exchange(socket, data, response, now);
+                    }
+                } finally {
+                    stats.sessions.close();
+                }
+            } catch (IOException e) {
+                stats.errors.increment();
+                stats.connectFailures.record(port, e);
+            }
+
+            if (schedule == null && testConfig.delayBetweenConnections > 0 && connected) {
+                try {
+                    Thread.sleep(testConfig.delayBetweenConnections);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void exchange(Socket socket, byte[] data, byte[] response, long start) throws IOException {
+        OutputStream output = socket.getOutputStream();
+        InputStream input = socket.getInputStream();
+        output.write(data, payloads.offsetFor(testConfig.dataSize, random), testConfig.dataSize);
+        output.flush();
+        int offset = 0;
+        while (offset < testConfig.dataSize) {
+            int read = input.read(response, offset, testConfig.dataSize - offset);
+            if (read == -1) {
+                throw new EOFException("Connection closed by server");
+            }
+            offset += read;
+        }
+        stats.requests.increment();
+        stats.bytes.add(testConfig.dataSize);
+        requestLatency.record(System.nanoTime() - start);
+    }
+}
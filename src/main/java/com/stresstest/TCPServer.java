@@ -6,19 +6,32 @@ import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 public class TCPServer {
     private final Config.ServerConfig config;
     private final ExecutorService executor;
-    private final AtomicLong connectionCount = new AtomicLong(0);
-    private final AtomicLong totalBytesReceived = new AtomicLong(0);
+    private final LongAdder connectionCount = new LongAdder();
+    private final LongAdder totalBytesReceived = new LongAdder();
+    private final ConcurrencyGauge sessions = new ConcurrencyGauge();
+    private final PortCounters portConnections;
+    private NioTCPServer nioServer;
+    private StreamSink streamSink;
+    private final boolean sink;
     private volatile boolean running = false;
 
     public TCPServer(Config.ServerConfig config) {
+        this(config, false);
+    }
+
+    /**
+     * @param sink consume incoming streams without echoing (networkTest.tcpMode "stream")
+     */
+    public TCPServer(Config.ServerConfig config, boolean sink) {
         this.config = config;
-        this.executor = Executors.newCachedThreadPool();
+        this.sink = sink;
+        this.portConnections = new PortCounters(config.tcpPortRange.end - config.tcpPortRange.start + 1);
+        this.executor = WorkerThreads.newExecutor("tcp-server");
     }
 
     public void start() {
@@ -27,28 +40,43 @@ public class TCPServer {
             return;
         }
 
+        if (sink) {
+            streamSink = new StreamSink(config, executor, connectionCount, totalBytesReceived, sessions, portConnections);
+            streamSink.start();
+            return;
+        }
+
+        if ("nio".equalsIgnoreCase(config.tcpEngine)) {
+            nioServer = new NioTCPServer(config, connectionCount, totalBytesReceived, sessions, portConnections);
+            nioServer.start();
+            return;
+        }
+
         running = true;
         
         for (int port = config.tcpPortRange.start; port <= config.tcpPortRange.end; port++) {
             final int currentPort = port;
             executor.submit(() -> {
-                try (ServerSocket serverSocket = new ServerSocket(currentPort)) {
-                    System.out.println("TCP Server listening on port " + currentPort);
+                try (ServerSocket serverSocket = new ServerSocket()) {
+                    SocketTuning.bind(serverSocket, currentPort, config.tcpBacklog, config.socketOptions);
+                    AsyncLog.info("TCP Server listening on port " + currentPort);
                     
                     while (running) {
                         try {
                             Socket clientSocket = serverSocket.accept();
-                            connectionCount.incrementAndGet();
+                            connectionCount.increment();
+                            portConnections.increment(currentPort - config.tcpPortRange.start);
+                            SocketTuning.configure(clientSocket, config.socketOptions);
                             
                             executor.submit(() -> handleClient(clientSocket));
                         } catch (IOException e) {
                             if (running) {
-                                System.err.println("Error accepting connection on port " + currentPort + ": " + e.getMessage());
+                                AsyncLog.warn("Error accepting connection on port " + currentPort + ": " + e.getMessage());
                             }
                         }
                     }
                 } catch (IOException e) {
-                    System.err.println("Error starting TCP server on port " + currentPort + ": " + e.getMessage());
+                    AsyncLog.error("Error starting TCP server on port " + currentPort + ": " + e.getMessage());
                 }
             });
         }
@@ -57,6 +85,7 @@ public class TCPServer {
     }
 
     private void handleClient(Socket socket) {
+        sessions.open();
         try {
             InputStream input = socket.getInputStream();
             OutputStream output = socket.getOutputStream();
@@ -65,7 +94,7 @@ public class TCPServer {
             int bytesRead;
             
             while ((bytesRead = input.read(buffer)) != -1) {
-                totalBytesReceived.addAndGet(bytesRead);
+                totalBytesReceived.add(bytesRead);
                 // Echo back to client
                 output.write(buffer, 0, bytesRead);
                 output.flush();
@@ -73,6 +102,7 @@ public class TCPServer {
         } catch (IOException e) {
             // Connection closed or error - this is expected
         } finally {
+            sessions.close();
             try {
                 socket.close();
             } catch (IOException e) {
@@ -83,15 +113,33 @@ public class TCPServer {
 
     public void stop() {
         running = false;
+        if (nioServer != null) {
+            nioServer.stop();
+        }
+        if (streamSink != null) {
+            streamSink.stop();
+        }
         executor.shutdown();
     }
 
     public long getConnectionCount() {
-        return connectionCount.get();
+        return connectionCount.sum();
+    }
+
+    public long getPortConnectionCount(int port) {
+        return portConnections.get(port - config.tcpPortRange.start);
+    }
+
+    public int getActiveSessions() {
+        return sessions.getActive();
+    }
+
+    public int getPeakSessions() {
+        return sessions.getPeak();
     }
 
     public long getTotalBytesReceived() {
-        return totalBytesReceived.get();
+        return totalBytesReceived.sum();
     }
 }
 
@@ -0,0 +1,170 @@
+package com.stresstest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * Stream mode client: opens one long-lived connection and sends the source file
+ * iterations times, either with FileChannel.transferTo (sendfile, no user-space copy)
+ * or by reading it into a heap buffer and writing that to the socket. The server only
+ * sinks the data, so throughput is limited by the sender, the network or the sink.
+ */
+public class TCPStreamClient implements ClientWorker {
+    private static final long TRANSFER_CHUNK = 8L * 1024 * 1024;
+
+    private final Config.ClientConfig config;
+    private final Config.TestConfig testConfig;
+    private final ClientStats stats;
+    private final StreamStats streamStats;
+    private final File source;
+    private final boolean zeroCopy;
+    private final Random random;
+    private final AccessDistribution portAccess;
+    private volatile boolean running = true;
+
+    public TCPStreamClient(Config.ClientConfig config, Config.TestConfig testConfig, ClientStats stats,
+                           StreamStats streamStats, File source, boolean zeroCopy, Random random) {
+        this.config = config;
+        this.testConfig = testConfig;
+        this.stats = stats;
+        this.streamStats = streamStats;
+        this.source = source;
+        this.zeroCopy = zeroCopy;
+        this.random = random;
+        this.portAccess = AccessDistribution.create(testConfig.portAccess);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * Returns the configured source file, or writes a temporary one of streamSourceSize
+     * bytes from the payload pool. The temporary file is deleted when the JVM exits.
+     */
+    public static File prepareSource(Config.TestConfig testConfig, PayloadPool payloads) throws IOException {
+        if (testConfig.streamSourceFile != null && !testConfig.streamSourceFile.isEmpty()) {
+            File file = new File(testConfig.streamSourceFile);
+            if (!file.isFile()) {
+                throw new IOException("Stream source file not found: " + file);
+            }
+            return file;
+        }
+        File file = File.createTempFile("mystress-stream", ".dat");
+        file.deleteOnExit();
+        byte[] region = payloads.region();
+        try (OutputStream out = new FileOutputStream(file)) {
+            for (long written = 0; written < testConfig.streamSourceSize; ) {
+                int length = (int) Math.min(region.length, testConfig.streamSourceSize - written);
+                out.write(region, 0, length);
+                written += length;
+            }
+        }
+        return file;
+    }
+
+    @Override
+    public void run() {
+        SocketChannel channel = connect();
+        if (channel == null) {
+            return;
+        }
+        stats.sessions.open();
+        long startNanos = System.nanoTime();
+        long startCpu = JvmStats.threadCpuNanos();
+        long sent = 0;
+        try (FileChannel file = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            long size = file.size();
+            for (int i = 0; i < testConfig.iterations && running; i++) {
+                sent += zeroCopy ? sendZeroCopy(file, size, channel) : sendHeap(file, size, channel);
+                stats.requests.increment();
+            }
+            channel.shutdownOutput();
+        } catch (IOException e) {
+            stats.errors.increment();
+        } finally {
+            long endCpu = JvmStats.threadCpuNanos();
+            streamStats.add(zeroCopy ? "zerocopy" : "heap", sent, startNanos, System.nanoTime(),
+                startCpu >= 0 && endCpu >= 0 ? endCpu - startCpu : -1);
+            stats.sessions.close();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+    }
+
+    private long sendZeroCopy(FileChannel file, long size, SocketChannel channel) throws IOException {
+        long position = 0;
+        while (position < size && running) {
+            long transferred = file.transferTo(position, Math.min(TRANSFER_CHUNK, size - position), channel);
+            position += transferred;
+            stats.bytes.add(transferred);
+        }
+        return position;
+    }
+
+    // Reads into a heap array and writes it from there: the JDK copies a heap buffer
+    // into a temporary direct buffer on every socket write, as a typical stream copy does
+    private long sendHeap(FileChannel file, long size, SocketChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(testConfig.streamBufferSize);
+        long position = 0;
+        while (position < size && running) {
+            buffer.clear();
+            int read = file.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            position += read;
+            stats.bytes.add(read);
+        }
+        return position;
+    }
+
+    private SocketChannel connect() {
+        // Retry connection on failure after connectRetryMillis
+        while (running) {
+            int port = config.tcpPortRange.start +
+                portAccess.next(random, config.tcpPortRange.end - config.tcpPortRange.start + 1);
+            SocketChannel channel = null;
+            try {
+                channel = SocketChannel.open();
+                SocketTuning.configure(channel.socket(), config.socketOptions);
+                channel.socket().connect(new InetSocketAddress(config.serverHost, port), config.connectTimeoutMillis);
+                stats.connections.increment();
+                return channel;
+            } catch (IOException e) {
+                stats.errors.increment();
+                stats.connectFailures.record(port, e);
+                if (channel != null) {
+                    try {
+                        channel.close();
+                    } catch (IOException ce) {
+                        // Ignore
+                    }
+                }
+                try {
+                    Thread.sleep(config.connectRetryMillis);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,46 @@
+package com.stresstest;
+
+/**
+ * Aggregate open-loop target rate shared by all workers of one workload. The load
+ * scheduler may change it while the test runs; each worker's RateSchedule reads the
+ * current value when it computes its next gap.
+ */
+public class TargetRate {
+    // Below this the schedules would wait minutes between sends and miss rate changes
+    private static final double MIN_RATE = 1.0;
+
+    private final int threadCount;
+    private final boolean openLoop;
+    private volatile double perThreadIntervalNanos;
+    private volatile double aggregate;
+
+    /**
+     * @param openLoop whether workers follow a schedule at all; closed-loop workers
+     *                 send as fast as responses come back and ignore the rate
+     */
+    public TargetRate(double aggregatePerSecond, int threadCount, boolean openLoop) {
+        this.threadCount = Math.max(1, threadCount);
+        this.openLoop = openLoop;
+        set(aggregatePerSecond);
+    }
+
+    public boolean isOpenLoop() {
+        return openLoop;
+    }
+
+    public double get() {
+        return aggregate;
+    }
+
+    public void set(double aggregatePerSecond) {
+        aggregate = Math.max(MIN_RATE, aggregatePerSecond);
+        perThreadIntervalNanos = 1_000_000_000.0 * threadCount / aggregate;
+    }
+
+    /**
+     * Mean gap between sends of one worker at the current rate.
+     */
+    public double meanIntervalNanos() {
+        return perThreadIntervalNanos;
+    }
+}
@@ -0,0 +1,138 @@
+package com.stresstest;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Deletes everything below a directory on a work-stealing ForkJoinPool. Every
+ * subdirectory becomes its own task and the files of one directory are deleted in
+ * batches of FILE_BATCH, so both deep trees and single huge directories spread over
+ * all threads. Directories are streamed, never listed into an array.
+ */
+public final class TreeDeleter {
+    private static final int FILE_BATCH = 512;
+
+    private final LongAdder files = new LongAdder();
+    private final LongAdder directories = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private double seconds;
+
+    /**
+     * Deletes the contents of root, keeping root itself.
+     *
+     * @param threads pool size, 0 for one thread per CPU core
+     */
+    public static TreeDeleter deleteContents(Path root, int threads) {
+        TreeDeleter deleter = new TreeDeleter();
+        ForkJoinPool pool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        long start = System.nanoTime();
+        try {
+            pool.invoke(deleter.new DirectoryTask(root, false));
+        } finally {
+            pool.shutdown();
+        }
+        deleter.seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        return deleter;
+    }
+
+    public long getFiles() {
+        return files.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public String describe() {
+        long entries = files.sum() + directories.sum();
+        return String.format("%d files, %d directories in %.2f s (%.0f entries/s)%s", files.sum(),
+            directories.sum(), seconds, seconds > 0 ? entries / seconds : 0.0,
+            failures.sum() > 0 ? ", " + failures.sum() + " failed" : "");
+    }
+
+    private void delete(Path path, LongAdder counter) {
+        try {
+            Files.delete(path);
+            counter.increment();
+        } catch (NoSuchFileException e) {
+            // Already gone
+        } catch (IOException e) {
+            failures.increment();
+        }
+    }
+
+    private final class DirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+        private final boolean deleteSelf;
+
+        DirectoryTask(Path directory, boolean deleteSelf) {
+            this.directory = directory;
+            this.deleteSelf = deleteSelf;
+        }
+
+        @Override
+        protected void compute() {
+            List<RecursiveAction> subtasks = new ArrayList<>();
+            List<Path> batch = new ArrayList<>(FILE_BATCH);
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                        subtasks.add(forked(new DirectoryTask(entry, true)));
+                    } else {
+                        batch.add(entry);
+                        if (batch.size() == FILE_BATCH) {
+                            subtasks.add(forked(new FileBatchTask(batch)));
+                            batch = new ArrayList<>(FILE_BATCH);
+                        }
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                return;
+            } catch (IOException e) {
+                failures.increment();
+            }
+            for (Path file : batch) {
+                delete(file, files);
+            }
+            for (RecursiveAction subtask : subtasks) {
+                subtask.join();
+            }
+            if (deleteSelf) {
+                delete(directory, directories);
+            }
+        }
+
+        private RecursiveAction forked(RecursiveAction task) {
+            task.fork();
+            return task;
+        }
+    }
+
+    private final class FileBatchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Path> batch;
+
+        FileBatchTask(List<Path> batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        protected void compute() {
+            for (Path file : batch) {
+                delete(file, files);
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.stresstest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Builds a pre-filled tree before measuring: creates a target number of files spread
+ * round-robin over a set of directories, with sizes drawn from a weighted distribution,
+ * on a ForkJoinPool. The file index range is split into fixed chunks, each with its own
+ * seeded stream, so the same seed yields the same names and sizes at any thread count.
+ */
+public final class TreePopulator {
+    private static final int CHUNK = 256;
+
+    private final LongAdder files = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile boolean cancelled;
+    private double seconds;
+
+    /**
+     * Creates files prefix0 .. prefix(count - 1) and adds each one to index. Returns
+     * early, with fewer files, when {@link #cancel()} is called from another thread.
+     *
+     * @param threads pool size, 0 for one thread per CPU core
+     */
+    public void createFiles(List<File> directories, long count, String prefix, SizeDistribution sizes,
+                            PayloadPool payloads, long seed, int threads, FileIndex index) {
+        ForkJoinPool pool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        long start = System.nanoTime();
+        try {
+            pool.invoke(new RangeTask(directories, 0, count, prefix, sizes, payloads, seed, index));
+        } finally {
+            pool.shutdown();
+        }
+        seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public long getFiles() {
+        return files.sum();
+    }
+
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    public String describe() {
+        return String.format("%d files (%.1f MB) in %.2f s (%.0f files/s, %.2f MB/s)%s", files.sum(),
+            bytes.sum() / (1024.0 * 1024), seconds, seconds > 0 ? files.sum() / seconds : 0.0,
+            seconds > 0 ? bytes.sum() / seconds / (1024 * 1024) : 0.0,
+            failures.sum() > 0 ? ", " + failures.sum() + " failed" : "");
+    }
+
+    private final class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<File> directories;
+        private final long from;
+        private final long to;
+        private final String prefix;
+        private final SizeDistribution sizes;
+        private final PayloadPool payloads;
+        private final long seed;
+        private final FileIndex index;
+
+        RangeTask(List<File> directories, long from, long to, String prefix, SizeDistribution sizes,
+                  PayloadPool payloads, long seed, FileIndex index) {
+            this.directories = directories;
+            this.from = from;
+            this.to = to;
+            this.prefix = prefix;
+            this.sizes = sizes;
+            this.payloads = payloads;
+            this.seed = seed;
+            this.index = index;
+        }
+
+        @Override
+        protected void compute() {
+            long chunks = (to - from + CHUNK - 1) / CHUNK;
+            if (chunks > 1) {
+                long middle = from + chunks / 2 * CHUNK;
+                invokeAll(new RangeTask(directories, from, middle, prefix, sizes, payloads, seed, index),
+                    new RangeTask(directories, middle, to, prefix, sizes, payloads, seed, index));
+                return;
+            }
+            Random random = SeededRandom.forWorker(seed, "prepopulate", (int) (from / CHUNK));
+            byte[] data = payloads.region();
+            for (long i = from; i < to && !cancelled; i++) {
+                File file = new File(directories.get((int) (i % directories.size())), prefix + i);
+                int size = sizes.next(random);
+                try (FileOutputStream out = new FileOutputStream(file)) {
+                    if (size > 0) {
+                        out.write(data, payloads.offsetFor(size, random), size);
+                    }
+                    files.increment();
+                    bytes.add(size);
+                    index.add(file);
+                } catch (IOException e) {
+                    failures.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Weighted file sizes: each bucket is picked with probability weight / total weight.
+     * Without buckets sizes are uniform between min and max.
+     */
+    public static final class SizeDistribution {
+        private final int[] sizes;
+        private final double[] cumulative;
+        private final int min;
+        private final int max;
+
+        private SizeDistribution(int[] sizes, double[] cumulative, int min, int max) {
+            this.sizes = sizes;
+            this.cumulative = cumulative;
+            this.min = min;
+            this.max = max;
+        }
+
+        public static SizeDistribution fixed(int size) {
+            return uniform(size, size);
+        }
+
+        public static SizeDistribution uniform(int min, int max) {
+            return new SizeDistribution(null, null, Math.max(0, min), Math.max(min, max));
+        }
+
+        public static SizeDistribution of(Config.SizeBucketConfig[] buckets, int defaultMin, int defaultMax) {
+            if (buckets == null || buckets.length == 0) {
+                return uniform(defaultMin, defaultMax);
+            }
+            int[] sizes = new int[buckets.length];
+            double[] cumulative = new double[buckets.length];
+            double total = 0;
+            for (Config.SizeBucketConfig bucket : buckets) {
+                total += Math.max(0, bucket.weight);
+            }
+            double sum = 0;
+            int max = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                sizes[i] = Math.max(0, buckets[i].size);
+                sum += total > 0 ? Math.max(0, buckets[i].weight) / total : 1.0 / buckets.length;
+                cumulative[i] = sum;
+                max = Math.max(max, sizes[i]);
+            }
+            return new SizeDistribution(sizes, cumulative, 0, max);
+        }
+
+        public int next(Random random) {
+            if (sizes == null) {
+                return min + (max > min ? random.nextInt(max - min + 1) : 0);
+            }
+            double draw = random.nextDouble();
+            for (int i = 0; i < cumulative.length - 1; i++) {
+                if (draw < cumulative[i]) {
+                    return sizes[i];
+                }
+            }
+            return sizes[sizes.length - 1];
+        }
+
+        public int max() {
+            return max;
+        }
+    }
+}
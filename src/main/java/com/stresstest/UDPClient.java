@@ -4,22 +4,38 @@ import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.net.SocketTimeoutException;
 import java.util.Random;
-import java.util.concurrent.atomic.AtomicLong;
 
-public class UDPClient implements Runnable {
+public class UDPClient implements ClientWorker {
+    private static final int RECEIVE_TIMEOUT_MILLIS = 100;
+    private static final int SEQUENCE_BYTES = 8;
+
     private final Config.ClientConfig config;
     private final Config.TestConfig testConfig;
-    private final AtomicLong packetCount;
-    private final AtomicLong totalBytesSent;
-    private final Random random = new Random();
+    private final ClientStats stats;
+    private final PayloadPool payloads;
+    private final LatencyTracker requestLatency;
+    private final Random random;
+    private final AccessDistribution portAccess;
+    private final RateSchedule schedule;
+    private volatile boolean running = true;
 
     public UDPClient(Config.ClientConfig config, Config.TestConfig testConfig,
-                     AtomicLong packetCount, AtomicLong totalBytesSent) {
+                     ClientStats stats, PayloadPool payloads, Random random, TargetRate rate) {
         this.config = config;
         this.testConfig = testConfig;
-        this.packetCount = packetCount;
-        this.totalBytesSent = totalBytesSent;
+        this.stats = stats;
+        this.payloads = payloads;
+        this.random = random;
+        this.portAccess = AccessDistribution.create(testConfig.portAccess);
+        this.requestLatency = stats.requestLatency;
+        this.schedule = RateSchedule.forThread(rate, testConfig.arrivalDistribution, random);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
     }
 
     @Override
@@ -41,9 +57,17 @@ public class UDPClient implements Runnable {
             }
         }
         
+        stats.sessions.open();
         try {
-            byte[] data = new byte[testConfig.dataSize];
-            random.nextBytes(data);
+            byte[] data = payloads.region();
+            // Response in the first half, the outgoing datagram in the second: each one is a
+            // payload slice stamped with a sequence number, so a late echo of an earlier
+            // (timed-out) packet is recognised instead of being taken for the current one
+            int size = testConfig.dataSize;
+            byte[] buffer = BufferPool.heap(size * 2);
+            boolean sequenced = size >= SEQUENCE_BYTES;
+            long sequence = 0;
+            boolean timeoutShortened = false;
             
             // Resolve server address with retry on failure
             InetAddress serverAddress = null;
@@ -62,28 +86,65 @@ public class UDPClient implements Runnable {
                 }
             }
 
-            for (int i = 0; i < testConfig.iterations; i++) {
+            // Packets are reused across iterations; only their offset and port change
+            DatagramPacket packet = new DatagramPacket(buffer, size, size, serverAddress, config.udpPortRange.start);
+            DatagramPacket response = new DatagramPacket(buffer, 0, size);
+            try {
+                socket.setSoTimeout(RECEIVE_TIMEOUT_MILLIS);
+            } catch (IOException e) {
+                // Keep the default (blocking) timeout
+            }
+
+            for (int i = 0; i < testConfig.iterations && running; i++) {
+                // Intended send time: the schedule slot in open-loop mode, otherwise now
+                long intended;
+                try {
+                    intended = schedule != null ? schedule.awaitNext() : System.nanoTime();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+
                 int port = config.udpPortRange.start + 
-                          random.nextInt(config.udpPortRange.end - config.udpPortRange.start + 1);
+                          portAccess.next(random, config.udpPortRange.end - config.udpPortRange.start + 1);
                 
                 try {
-                    DatagramPacket packet = new DatagramPacket(
-                        data, data.length, serverAddress, port
-                    );
+                    System.arraycopy(data, payloads.offsetFor(size, random), buffer, size, size);
+                    if (sequenced) {
+                        writeSequence(buffer, size, ++sequence);
+                    }
+                    packet.setPort(port);
                     socket.send(packet);
-                    packetCount.incrementAndGet();
-                    totalBytesSent.addAndGet(data.length);
-                    
-                    // Try to receive echo (with timeout)
-                    socket.setSoTimeout(100);
-                    byte[] buffer = new byte[testConfig.dataSize];
-                    DatagramPacket response = new DatagramPacket(buffer, buffer.length);
-                    socket.receive(response);
+                    stats.requests.increment();
+                    stats.bytes.add(size);
+
+                    // Try to receive echo (with timeout); stale echoes are skipped within the same timeout
+                    if (timeoutShortened) {
+                        socket.setSoTimeout(RECEIVE_TIMEOUT_MILLIS);
+                        timeoutShortened = false;
+                    }
+                    long deadline = System.nanoTime() + RECEIVE_TIMEOUT_MILLIS * 1_000_000L;
+                    while (true) {
+                        response.setLength(size);
+                        socket.receive(response);
+                        if (!sequenced || (response.getLength() >= SEQUENCE_BYTES && readSequence(buffer) == sequence)) {
+                            break;
+                        }
+                        long remaining = (deadline - System.nanoTime()) / 1_000_000L;
+                        if (remaining <= 0) {
+                            throw new SocketTimeoutException("Only stale echoes received");
+                        }
+                        socket.setSoTimeout((int) remaining);
+                        timeoutShortened = true;
+                    }
+                    stats.responses.increment();
+                    requestLatency.record(System.nanoTime() - intended);
                 } catch (IOException e) {
                     // Timeout or error - continue
+                    stats.errors.increment();
                 }
                 
-                if (testConfig.delayBetweenIterations > 0 && i < testConfig.iterations - 1) {
+                if (schedule == null && testConfig.delayBetweenIterations > 0 && i < testConfig.iterations - 1) {
                     try {
                         Thread.sleep(testConfig.delayBetweenIterations);
                     } catch (InterruptedException e) {
@@ -93,10 +154,26 @@ public class UDPClient implements Runnable {
                 }
             }
         } finally {
+            stats.sessions.close();
             if (socket != null) {
                 socket.close();
             }
         }
     }
+
+    private static void writeSequence(byte[] buffer, int offset, long sequence) {
+        for (int i = SEQUENCE_BYTES - 1; i >= 0; i--) {
+            buffer[offset + i] = (byte) sequence;
+            sequence >>>= 8;
+        }
+    }
+
+    private static long readSequence(byte[] buffer) {
+        long sequence = 0;
+        for (int i = 0; i < SEQUENCE_BYTES; i++) {
+            sequence = (sequence << 8) | (buffer[i] & 0xFF);
+        }
+        return sequence;
+    }
 }
 
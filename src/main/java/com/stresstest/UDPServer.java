@@ -6,18 +6,23 @@ import java.net.DatagramSocket;
 import java.net.SocketException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 public class UDPServer {
     private final Config.ServerConfig config;
     private final ExecutorService executor;
-    private final AtomicLong packetCount = new AtomicLong(0);
-    private final AtomicLong totalBytesReceived = new AtomicLong(0);
+    private final LongAdder packetCount = new LongAdder();
+    private final LongAdder totalBytesReceived = new LongAdder();
+    private final PortCounters portPackets;
+    private NioUDPServer nioServer;
     private volatile boolean running = false;
+    private long startTime;
+    private long stopTime;
 
     public UDPServer(Config.ServerConfig config) {
         this.config = config;
         this.executor = Executors.newCachedThreadPool();
+        this.portPackets = new PortCounters(config.udpPortRange.end - config.udpPortRange.start + 1);
     }
 
     public void start() {
@@ -26,39 +31,44 @@ public class UDPServer {
             return;
         }
 
+        startTime = System.nanoTime();
+
+        if ("nio".equalsIgnoreCase(config.udpEngine)) {
+            nioServer = new NioUDPServer(config, packetCount, totalBytesReceived, portPackets);
+            nioServer.start();
+            return;
+        }
+
         running = true;
         
         for (int port = config.udpPortRange.start; port <= config.udpPortRange.end; port++) {
             final int currentPort = port;
+            final int portIndex = port - config.udpPortRange.start;
             executor.submit(() -> {
                 try (DatagramSocket socket = new DatagramSocket(currentPort)) {
-                    System.out.println("UDP Server listening on port " + currentPort);
+                    AsyncLog.info("UDP Server listening on port " + currentPort);
                     byte[] buffer = new byte[8192];
+                    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
                     
                     while (running) {
                         try {
-                            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                            packet.setLength(buffer.length);
                             socket.receive(packet);
                             
-                            packetCount.incrementAndGet();
-                            totalBytesReceived.addAndGet(packet.getLength());
+                            packetCount.increment();
+                            totalBytesReceived.add(packet.getLength());
+                            portPackets.increment(portIndex);
                             
-                            // Echo back to client
-                            DatagramPacket response = new DatagramPacket(
-                                packet.getData(), 
-                                packet.getLength(),
-                                packet.getAddress(),
-                                packet.getPort()
-                            );
-                            socket.send(response);
+                            // Echo back to client (packet already carries the sender address)
+                            socket.send(packet);
                         } catch (IOException e) {
                             if (running) {
-                                System.err.println("Error receiving UDP packet on port " + currentPort + ": " + e.getMessage());
+                                AsyncLog.warn("Error receiving UDP packet on port " + currentPort + ": " + e.getMessage());
                             }
                         }
                     }
                 } catch (SocketException e) {
-                    System.err.println("Error starting UDP server on port " + currentPort + ": " + e.getMessage());
+                    AsyncLog.error("Error starting UDP server on port " + currentPort + ": " + e.getMessage());
                 }
             });
         }
@@ -68,15 +78,44 @@ public class UDPServer {
 
     public void stop() {
         running = false;
+        if (nioServer != null) {
+            nioServer.stop();
+        }
         executor.shutdown();
+        stopTime = System.nanoTime();
     }
 
     public long getPacketCount() {
-        return packetCount.get();
+        return packetCount.sum();
     }
 
     public long getTotalBytesReceived() {
-        return totalBytesReceived.get();
+        return totalBytesReceived.sum();
     }
-}
 
+    public long getPortPacketCount(int port) {
+        return portPackets.get(port - config.udpPortRange.start);
+    }
+
+    public void printPortStatistics() {
+        long end = stopTime > 0 ? stopTime : System.nanoTime();
+        double seconds = Math.max(end - startTime, 1) / 1_000_000_000.0;
+        long maxPackets = 0;
+        int busiestPort = config.udpPortRange.start;
+
+        System.out.println("  Per-port packets/sec:");
+        for (int port = config.udpPortRange.start; port <= config.udpPortRange.end; port++) {
+            long packets = getPortPacketCount(port);
+            if (packets == 0) {
+                continue;
+            }
+            if (packets > maxPackets) {
+                maxPackets = packets;
+                busiestPort = port;
+            }
+            System.out.printf("    %d: %.1f%n", port, packets / seconds);
+        }
+        System.out.printf("  Aggregate packets/sec: %.1f (busiest port %d: %.1f)%n",
+            packetCount.sum() / seconds, busiestPort, maxPackets / seconds);
+    }
+}
@@ -0,0 +1,20 @@
+package com.stresstest;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Java 8 build of the virtual thread hook: no virtual threads. The Java 21 build of
+ * this class (src/main/java21, packaged under META-INF/versions/21) replaces it.
+ */
+final class VirtualThreadSupport {
+    private VirtualThreadSupport() {
+    }
+
+    static boolean isAvailable() {
+        return false;
+    }
+
+    static ExecutorService newExecutor(String name) {
+        throw new UnsupportedOperationException("Virtual threads need Java 21+");
+    }
+}
@@ -0,0 +1,42 @@
+package com.stresstest;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors for client threads, TCP connection handlers and file workers. In "virtual"
+ * mode each task gets its own virtual thread when the JVM supports it, so 100k mostly
+ * idle sessions cost little more than their sockets; otherwise, and in "platform" mode,
+ * tasks run on a cached pool of named platform threads.
+ */
+public final class WorkerThreads {
+    private static volatile boolean virtual;
+
+    private WorkerThreads() {
+    }
+
+    /**
+     * Selects the thread mode for executors created afterwards. Returns the mode in effect.
+     */
+    public static String configure(String mode) {
+        virtual = false;
+        if ("virtual".equalsIgnoreCase(mode)) {
+            if (VirtualThreadSupport.isAvailable()) {
+                virtual = true;
+            } else {
+                System.out.println("  Virtual threads are not available on Java "
+                    + System.getProperty("java.specification.version") + ", using platform threads");
+            }
+        }
+        return virtual ? "virtual" : "platform";
+    }
+
+    public static ExecutorService newExecutor(String name) {
+        if (virtual) {
+            return VirtualThreadSupport.newExecutor(name);
+        }
+        AtomicInteger sequence = new AtomicInteger();
+        return Executors.newCachedThreadPool(r -> new Thread(r, name + "-" + sequence.getAndIncrement()));
+    }
+}
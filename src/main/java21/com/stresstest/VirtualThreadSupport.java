@@ -0,0 +1,20 @@
+package com.stresstest;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Java 21 build of the virtual thread hook: one virtual thread per submitted task.
+ */
+final class VirtualThreadSupport {
+    private VirtualThreadSupport() {
+    }
+
+    static boolean isAvailable() {
+        return true;
+    }
+
+    static ExecutorService newExecutor(String name) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+    }
+}